@@ -5,7 +5,7 @@ import org.ethereum.vm.crypto.zksnark.Fp;
 
 import java.math.BigInteger;
 
-import static com.aztec.bn128.Utils.H;
+import static com.aztec.bn128.Utils.mulH;
 import static org.ethereum.vm.crypto.zksnark.Params.R;
 
 public class Note {
@@ -86,7 +86,7 @@ public class Note {
             this.k = new BigInteger(viewingKey.substring(66, 74), 16).mod(R);
             BN128Fp mu = new BN128Fp(new Fp(setupPoint[0]), new Fp(setupPoint[1]), Fp._1);
             this.gamma = (BN128Fp) mu.mul(this.a).toAffine();
-            this.sigma = (BN128Fp) this.gamma.mul(this.k).add(H.mul(this.a));
+            this.sigma = (BN128Fp) this.gamma.mul(this.k).add(mulH(this.a));
             this.metaData = secp256k1.compress(secp256k1.ec.keyFromPublic(viewingKey.slice(74, 140), 'hex').getPublic());
         }
 
@@ -0,0 +1,184 @@
+package com.aztec.bn128;
+
+import java.math.BigInteger;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.ethereum.vm.crypto.zksnark.BN128;
+import org.ethereum.vm.crypto.zksnark.BN128Fp;
+import org.ethereum.vm.crypto.zksnark.Fp;
+import org.ethereum.vm.crypto.zksnark.PairingCheck;
+
+/**
+ * Non-blocking facade over pairing checks, scalar multiplications and note value recovery. Operations run on an
+ * executor and complete the returned futures, so request threads are not held for the milliseconds an operation takes.
+ *
+ * At most maxPending operations are queued or running at any time. An operation submitted beyond that is not queued,
+ * its future fails at once with a RejectedExecutionException, so a burst can't pile up tasks in memory and callers can
+ * shed the load.
+ */
+public class AsyncCrypto implements AutoCloseable {
+    /** Default limit of queued and running operations
+     *  @constant DEFAULT_MAX_PENDING
+     *  @default 1024
+     */
+    public static final int DEFAULT_MAX_PENDING = 1024;
+
+    private final Executor executor;
+    private final Semaphore pending;
+    // executor created by this instance, shut down on close()
+    private final ExecutorService owned;
+
+    /**
+     * Runs operations on virtual threads if the runtime has them, otherwise on a pool with a thread per core
+     */
+    public AsyncCrypto() {
+        this(DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * Same as AsyncCrypto() with a custom limit of pending operations
+     * @param maxPending maximum number of queued and running operations
+     */
+    public AsyncCrypto(int maxPending) {
+        this(defaultExecutor(maxPending), maxPending, true);
+    }
+
+    /**
+     * Runs operations on a caller-supplied executor, which is not shut down on close()
+     * @param executor executor for the operations
+     * @param maxPending maximum number of queued and running operations
+     */
+    public AsyncCrypto(Executor executor, int maxPending) {
+        this(executor, maxPending, false);
+    }
+
+    private AsyncCrypto(Executor executor, int maxPending, boolean owned) {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("maxPending must be positive");
+        }
+        this.executor = executor;
+        this.pending = new Semaphore(maxPending);
+        this.owned = owned && executor instanceof ExecutorService ? (ExecutorService) executor : null;
+    }
+
+    /**
+     * Virtual-thread-per-task executor when available (Java 21+), looked up reflectively as the code targets Java 11.
+     * A fixed pool with a bounded queue otherwise, the queue can't overflow as the number of pending operations is
+     * bounded by the same limit
+     */
+    private static ExecutorService defaultExecutor(int maxPending) {
+        try {
+            var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            var pool = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxPending),
+                runnable -> {
+                    var thread = new Thread(runnable, "aztec-crypto");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            );
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    /**
+     * Run a pairing check
+     * @param check pairing check with all pairs added
+     * @return future of the check result, 1 on success and 0 on failure
+     */
+    public CompletableFuture<Integer> pairingCheck(PairingCheck check) {
+        return submit(() -> {
+            check.run();
+            return check.result();
+        });
+    }
+
+    /**
+     * Multiply a point by a scalar
+     * @param point bn128 point
+     * @param scalar scalar
+     * @return future of point * scalar
+     */
+    public CompletableFuture<BN128<Fp>> mul(BN128<Fp> point, BigInteger scalar) {
+        return submit(() -> point.mul(scalar));
+    }
+
+    /**
+     * Recover an AZTEC note value, see Utils.recoverMessage
+     * @param gamma the AZTEC note coordinate \gamma
+     * @param gammaK the AZTEC decrypted coordinate \gamma^{k}
+     * @return future of the note value, it fails if the value can't be found
+     */
+    public CompletableFuture<Long> recoverMessage(BN128Fp gamma, BN128Fp gammaK) {
+        return submit(() -> Utils.recoverMessage(gamma, gammaK));
+    }
+
+    /**
+     * Number of operations that can be submitted before new ones are rejected
+     * @return free slots
+     */
+    public int available() {
+        return pending.availablePermits();
+    }
+
+    private <V> CompletableFuture<V> submit(Callable<V> task) {
+        var future = new CompletableFuture<V>();
+
+        if (!pending.tryAcquire()) {
+            future.completeExceptionally(new RejectedExecutionException("too many pending operations"));
+            return future;
+        }
+
+        try {
+            executor.execute(() -> {
+                V result = null;
+                Throwable error = null;
+                try {
+                    result = task.call();
+                } catch (Throwable e) {
+                    error = e;
+                } finally {
+                    // free the slot before dependent stages run on this thread
+                    pending.release();
+                }
+
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(result);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.release();
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * Shut down the executor created by this instance, a caller-supplied executor is left running
+     */
+    @Override
+    public void close() {
+        if (owned != null) {
+            owned.shutdown();
+        }
+    }
+}
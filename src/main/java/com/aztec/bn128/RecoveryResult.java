@@ -0,0 +1,72 @@
+package com.aztec.bn128;
+
+/**
+ * Outcome of a note value recovery bounded by a deadline or a cancellation, see Utils.recoverMessage. Besides the
+ * value, it tells whether the search was completed and how much work it took.
+ */
+public final class RecoveryResult {
+
+    public enum Status {
+        // the value has been found
+        FOUND,
+        // the whole range has been searched without finding the value
+        NOT_FOUND,
+        // the deadline passed before the search was over
+        TIMED_OUT,
+        // the search was cancelled by the caller
+        CANCELLED
+    }
+
+    private final Status status;
+    private final long value;
+    private final long iterations;
+
+    private RecoveryResult(Status status, long value, long iterations) {
+        this.status = status;
+        this.value = value;
+        this.iterations = iterations;
+    }
+
+    static RecoveryResult found(long value, long iterations) {
+        return new RecoveryResult(Status.FOUND, value, iterations);
+    }
+
+    static RecoveryResult of(Status status, long iterations) {
+        return new RecoveryResult(status, -1, iterations);
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    public boolean isFound() {
+        return status == Status.FOUND;
+    }
+
+    /**
+     * The value of the note
+     * @return the value of the note
+     * @throws IllegalStateException if the value hasn't been found
+     */
+    public long value() {
+        if (status != Status.FOUND) {
+            throw new IllegalStateException("note value not found: " + status);
+        }
+        return value;
+    }
+
+    /**
+     * Group operations done by the search, until it was over or abandoned
+     * @return number of group operations
+     */
+    public long iterations() {
+        return iterations;
+    }
+
+    @Override
+    public String toString() {
+        return status == Status.FOUND
+            ? "FOUND " + value + " after " + iterations + " iterations"
+            : status + " after " + iterations + " iterations";
+    }
+}
@@ -1,14 +1,38 @@
 package com.aztec.bn128;
 
+import static com.aztec.utils.Constants.FIXED_BASE_WINDOW;
 import static com.aztec.utils.Constants.K_MAX;
 import static com.aztec.utils.Hex.randomHex;
 import static org.ethereum.vm.crypto.zksnark.Params.B_Fp;
 
 import com.aztec.utils.Hex;
 import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import org.ethereum.vm.crypto.zksnark.BN128;
 import org.ethereum.vm.crypto.zksnark.BN128Fp;
+import org.ethereum.vm.crypto.zksnark.BN128G1;
+import org.ethereum.vm.crypto.zksnark.BN128G2;
+import org.ethereum.vm.crypto.zksnark.BabyStepGiantStep;
+import org.ethereum.vm.crypto.zksnark.FixedBaseTable;
 import org.ethereum.vm.crypto.zksnark.Fp;
+import org.ethereum.vm.crypto.zksnark.Fp12;
+import org.ethereum.vm.crypto.zksnark.MutableFp;
+import org.ethereum.vm.crypto.zksnark.PairingCheck;
 import org.ethereum.vm.crypto.zksnark.Params;
+import org.ethereum.vm.crypto.zksnark.PollardKangaroo;
+import org.ethereum.vm.crypto.zksnark.PreparedG2;
 
 public class Utils {
     public static final String hXHex = "00164b60d0fa1eab5d56d9653aed9dc7f7473acbe61df67134c705638441c4b9";
@@ -25,6 +49,39 @@ public class Utils {
      */
     public static final BN128Fp g = new BN128Fp(Fp._1, Fp._2, Fp._1);
 
+    // steps a recovery worker takes between checks for a stop
+    private static final int RECOVERY_CHECK_INTERVAL = 1024;
+
+    // below this many notes, an inversion per step costs more than stepping each note in Jacobian coordinates
+    private static final int BATCH_RECOVERY_MIN_NOTES = 32;
+
+    // fixed-base tables are built on first use, once per JVM
+    private static class GTable {
+        static final FixedBaseTable INSTANCE = new FixedBaseTable(g, FIXED_BASE_WINDOW);
+    }
+
+    private static class HTable {
+        static final FixedBaseTable INSTANCE = new FixedBaseTable(H, FIXED_BASE_WINDOW);
+    }
+
+    /**
+     * Multiplies the generator g by a scalar using a precomputed table, same result as g.mul(x)
+     * @param x scalar
+     * @return g^x
+     */
+    public static BN128Fp mulG(BigInteger x) {
+        return GTable.INSTANCE.mul(x);
+    }
+
+    /**
+     * Multiplies AZTEC's second generator h by a scalar using a precomputed table, same result as H.mul(x)
+     * @param x scalar
+     * @return h^x
+     */
+    public static BN128Fp mulH(BigInteger x) {
+        return HTable.INSTANCE.mul(x);
+    }
+
     /**
      * The common reference string
      */
@@ -37,6 +94,94 @@ public class Utils {
 
     public static final String[] CRS = new String[] { "0x" + hXHex, "0x" + hYHex, t2[0], t2[1], t2[2], t2[3] };
 
+    /**
+     * Generator of the G2 group, in the same coordinate order as t2
+     */
+    public static final String[] g2 = new String[] {
+        "0x1800deef121f1e76426a00665e5c4479674322d4f75edadd46debd5cd992f6ed",
+        "0x198e9393920d483a7260bfb731fb5d25f1aa493335a9e71297e485b7aef312c2",
+        "0x12c85ea5db8c6deb4aab71808dcb408fe3d1e7690c43d37b4ce6cc0166fa7daa",
+        "0x090689d0585ff075ec9e99ad690c3395bc4b313370b38ef355acdadcd122975b"
+    };
+
+    // Miller loop coefficients of the fixed G2 points are computed on first use, once per JVM
+    private static class PreparedT2 {
+        static final PreparedG2 INSTANCE = PreparedG2.of(g2Point(t2));
+    }
+
+    private static class PreparedGenerator {
+        static final PreparedG2 INSTANCE = PreparedG2.of(g2Point(g2));
+    }
+
+    /**
+     * The trusted setup point t2 prepared for pairing checks
+     * @return prepared t2
+     */
+    public static PreparedG2 preparedT2() {
+        return PreparedT2.INSTANCE;
+    }
+
+    /**
+     * The G2 generator prepared for pairing checks
+     * @return prepared G2 generator
+     */
+    public static PreparedG2 preparedG2Generator() {
+        return PreparedGenerator.INSTANCE;
+    }
+
+    // pairings of the fixed points are computed on first use, once per JVM
+    private static class PairingHT2 {
+        static final Fp12 INSTANCE = PairingCheck.pairing(g1Point(H), preparedT2());
+    }
+
+    private static class PairingGG2 {
+        static final Fp12 INSTANCE = PairingCheck.pairing(g1Point(g), preparedG2Generator());
+    }
+
+    /**
+     * Pairing of AZTEC's second generator h and the trusted setup point t2, for PairingCheck.addFactor
+     * @return e(h, t2)
+     */
+    public static Fp12 pairingHT2() {
+        return PairingHT2.INSTANCE;
+    }
+
+    /**
+     * Pairing of the G1 and G2 generators, for PairingCheck.addFactor
+     * @return e(g, g2)
+     */
+    public static Fp12 pairingGG2() {
+        return PairingGG2.INSTANCE;
+    }
+
+    /**
+     * Convert aztec.getA bn128 point to aztec.getA G1 point for pairing checks
+     * @param point BN128Fp point
+     * @return BN128G1 point
+     */
+    public static BN128G1 g1Point(BN128Fp point) {
+        var affine = point.toAffine();
+        return BN128G1.create(affine.x().bytes(), affine.y().bytes());
+    }
+
+    /**
+     * Parse aztec.getA G2 point given by its four hex coordinates
+     * @param coordinates hex coordinates, in the order of t2
+     * @return BN128G2 point
+     */
+    public static BN128G2 g2Point(String[] coordinates) {
+        var bytes = new byte[4][];
+        for (int i = 0; i < 4; i++) {
+            bytes[i] = new BigInteger(Hex.cleanHexPrefix(coordinates[i]), 16).toByteArray();
+        }
+
+        var point = BN128G2.create(bytes[0], bytes[1], bytes[2], bytes[3]);
+        if (point == null) {
+            throw new IllegalArgumentException("not a G2 point");
+        }
+        return point;
+    }
+
     public static final BigInteger compressionMask = new BigInteger(
         "8000000000000000000000000000000000000000000000000000000000000000",
         16
@@ -70,10 +215,7 @@ public class Utils {
 
         var y2 = x.squared().mul(x).add(B_Fp);
 
-        var y = y2.sqrt(); // TODO quitar comprobación si nosotros ya hacemos throw en sqrt()
-        if (y.squared().sub(y2) != Fp.ZERO) {
-            throw new Exception("x^3 + 3 not a square, malformed input");
-        }
+        var y = y2.sqrt(); // throws if x^3 + 3 is not a square, i.e. input is malformed
         var yBI = y.toBigInteger();
         if (yBI.testBit(0) != yBit) { // y.isOdd() != yBit
             y = new Fp(Params.P.subtract(yBI));
@@ -103,12 +245,12 @@ public class Utils {
      */
     public static BN128Fp randomPoint() {
         var x = randomScalar();
-        return (BN128Fp) g.mul(x);
+        return mulG(x);
     }
 
     /**
-     * Brute-force recover an AZTEC note value from a decrypted point pair.
-     *   Requires the value 'k' is less than ~ 1 million
+     * Recover an AZTEC note value from a decrypted point pair.
+     *   Requires the value 'k' is less than K_MAX
      * @param gamma the AZTEC note coordinate \gamma
      * @param gammaK the AZTEC decrypted coordinate \gamma^{k}. Computed from \sigma.h^{-a}
      * @return the value of the note
@@ -118,30 +260,396 @@ public class Utils {
     }
 
     /**
-     * Brute-force recover an AZTEC note value from a decrypted point pair.
-     *   Requires the value 'k' is less than ~ 1 million
+     * Recover an AZTEC note value from a decrypted point pair, searching 1 <= k < K.
+     *   Uses a baby-step giant-step search with sqrt(K / 2) baby steps, about sqrt(2 * K) group operations
      * @param gamma the AZTEC note coordinate \gamma
      * @param gammaK the AZTEC decrypted coordinate \gamma^{k}. Computed from \sigma.h^{-a}
      * @param K K_MAX
      * @return the value of the note
      */
     public static long recoverMessage(BN128Fp gamma, BN128Fp gammaK, int K) throws Exception {
+        return recoverMessage(gamma, gammaK, K, BabyStepGiantStep.babySteps(K));
+    }
+
+    /**
+     * Same as recoverMessage(gamma, gammaK, K) with a custom number of baby steps. The table takes about
+     * 100 bytes per baby step, more baby steps mean fewer giant steps: the search takes about babySteps + K /
+     * (2 * babySteps) group operations
+     * @param gamma the AZTEC note coordinate \gamma
+     * @param gammaK the AZTEC decrypted coordinate \gamma^{k}. Computed from \sigma.h^{-a}
+     * @param K K_MAX
+     * @param babySteps size of the baby-step table
+     * @return the value of the note
+     */
+    public static long recoverMessage(BN128Fp gamma, BN128Fp gammaK, int K, int babySteps) throws Exception {
+        if (gammaK.isZero()) {
+            return 1;
+        }
+        var k = new BabyStepGiantStep(gamma, babySteps).find(gammaK, 1, K);
+        if (k < 0) {
+            throw new Exception("could not find k!");
+        }
+        return k;
+    }
+
+    /**
+     * Recover an AZTEC note value like recoverMessage(gamma, gammaK), giving up at the deadline
+     * @param gamma the AZTEC note coordinate \gamma
+     * @param gammaK the AZTEC decrypted coordinate \gamma^{k}. Computed from \sigma.h^{-a}
+     * @param deadline time by which the search is abandoned
+     * @return the value of the note, or why it hasn't been found
+     */
+    public static RecoveryResult recoverMessage(BN128Fp gamma, BN128Fp gammaK, Instant deadline) {
+        return recoverMessage(gamma, gammaK, K_MAX, deadline, () -> false);
+    }
+
+    /**
+     * Recover an AZTEC note value like recoverMessage(gamma, gammaK), giving up once cancelled
+     * @param gamma the AZTEC note coordinate \gamma
+     * @param gammaK the AZTEC decrypted coordinate \gamma^{k}. Computed from \sigma.h^{-a}
+     * @param cancelled returns true once the search should be abandoned, e.g. future::isCancelled
+     * @return the value of the note, or why it hasn't been found
+     */
+    public static RecoveryResult recoverMessage(BN128Fp gamma, BN128Fp gammaK, BooleanSupplier cancelled) {
+        return recoverMessage(gamma, gammaK, K_MAX, Instant.MAX, cancelled);
+    }
+
+    /**
+     * Recover an AZTEC note value with the baby-step giant-step search of recoverMessage(gamma, gammaK, K), giving up
+     *   at the deadline or once cancelled. Both are checked between batches of giant steps, i.e. every few hundred
+     *   microseconds, and never inside the steps themselves
+     * @param gamma the AZTEC note coordinate \gamma
+     * @param gammaK the AZTEC decrypted coordinate \gamma^{k}. Computed from \sigma.h^{-a}
+     * @param K K_MAX
+     * @param deadline time by which the search is abandoned
+     * @param cancelled returns true once the search should be abandoned, e.g. future::isCancelled
+     * @return the value of the note, or why it hasn't been found, with the group operations done so far
+     */
+    public static RecoveryResult recoverMessage(
+        BN128Fp gamma,
+        BN128Fp gammaK,
+        int K,
+        Instant deadline,
+        BooleanSupplier cancelled
+    ) {
+        if (gammaK.isZero()) {
+            return RecoveryResult.found(1, 0);
+        }
+        var stopped = stopped(deadline, cancelled);
+        if (stopped != null) {
+            return RecoveryResult.of(stopped, 0);
+        }
+
+        var table = new BabyStepGiantStep(gamma, BabyStepGiantStep.babySteps(K));
+        var search = table.search(gammaK, 1, K);
+        while (!search.advance()) {
+            stopped = stopped(deadline, cancelled);
+            if (stopped != null) {
+                return RecoveryResult.of(stopped, table.size() + search.steps());
+            }
+        }
+
+        var iterations = table.size() + search.steps();
+        return search.result() < 0
+            ? RecoveryResult.of(RecoveryResult.Status.NOT_FOUND, iterations)
+            : RecoveryResult.found(search.result(), iterations);
+    }
+
+    private static RecoveryResult.Status stopped(Instant deadline, BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) {
+            return RecoveryResult.Status.CANCELLED;
+        }
+        if (!Instant.now().isBefore(deadline)) {
+            return RecoveryResult.Status.TIMED_OUT;
+        }
+        return null;
+    }
+
+    /**
+     * Recover the values of many AZTEC notes at once, see recoverMessages(gammas, gammaKs, K)
+     * @param gammas the AZTEC note coordinates \gamma
+     * @param gammaKs the AZTEC decrypted coordinates \gamma^{k}, one per note
+     * @return the values of the notes, -1 for the ones that couldn't be found
+     */
+    public static long[] recoverMessages(BN128Fp[] gammas, BN128Fp[] gammaKs) {
+        return recoverMessages(gammas, gammaKs, K_MAX);
+    }
+
+    /**
+     * Brute-force recover the values of many AZTEC notes at once, each one searched in 1 <= k < K. All accumulators
+     *   j.gamma are stepped together in affine coordinates, and the inversions of a step are batched into a single
+     *   one, so a step costs a few field multiplications per note. A note drops out of the batch as soon as its value
+     *   is found, and the cost of a note is proportional to its value
+     * @param gammas the AZTEC note coordinates \gamma
+     * @param gammaKs the AZTEC decrypted coordinates \gamma^{k}, one per note
+     * @param K K_MAX
+     * @return the values of the notes, -1 for the ones that couldn't be found
+     */
+    public static long[] recoverMessages(BN128Fp[] gammas, BN128Fp[] gammaKs, int K) {
+        if (gammas.length != gammaKs.length) {
+            throw new IllegalArgumentException("gammas and gammaKs must have the same length");
+        }
+        var n = gammas.length;
+        var results = new long[n];
+        Arrays.fill(results, -1);
+
+        // gamma, gammaK and 2.gamma of every note with one inversion
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        BN128<Fp>[] points = (BN128<Fp>[]) new BN128[3 * n];
+        for (int i = 0; i < n; i++) {
+            points[3 * i] = gammas[i];
+            points[3 * i + 1] = gammaKs[i];
+            points[3 * i + 2] = gammas[i].add(gammas[i]);
+        }
+        points = BN128.batchToAffine(points);
+
+        // notes still searched, their accumulators j.gamma, gammas and targets, all affine
+        var active = new int[n];
+        var xs = new MutableFp[n];
+        var ys = new MutableFp[n];
+        var gxs = new MutableFp[n];
+        var gys = new MutableFp[n];
+        var txs = new MutableFp[n];
+        var tys = new MutableFp[n];
+        var count = 0;
+        for (int i = 0; i < n; i++) {
+            var gamma = points[3 * i];
+            var target = points[3 * i + 1];
+            if (gammaKs[i].isZero()) {
+                results[i] = 1;
+            } else if (K > 1 && !gammas[i].isZero() && gamma.x().equals(target.x()) && gamma.y().equals(target.y())) {
+                results[i] = 1;
+            } else if (!gammas[i].isZero()) {
+                xs[count] = new MutableFp(points[3 * i + 2].x());
+                ys[count] = new MutableFp(points[3 * i + 2].y());
+                gxs[count] = new MutableFp(gamma.x());
+                gys[count] = new MutableFp(gamma.y());
+                txs[count] = new MutableFp(target.x());
+                tys[count] = new MutableFp(target.y());
+                active[count++] = i;
+            }
+        }
+
+        // scratch: dx = gamma.x - x and prefix products of the dx for the batch inversion
+        var dxs = new MutableFp[n];
+        var prefixes = new MutableFp[n];
+        for (int c = 0; c < n; c++) {
+            dxs[c] = new MutableFp();
+            prefixes[c] = new MutableFp();
+        }
+        var inv = new MutableFp();
+        var lambda = new MutableFp();
+        var t = new MutableFp();
+
+        var j = 2;
+        for (; j < K && count >= BATCH_RECOVERY_MIN_NOTES; j++) {
+            // compare j.gamma with the targets, dropping the notes found
+            var remaining = 0;
+            for (int c = 0; c < count; c++) {
+                if (xs[c].valueEquals(txs[c]) && ys[c].valueEquals(tys[c])) {
+                    results[active[c]] = j;
+                    continue;
+                }
+                swap(xs, c, remaining);
+                swap(ys, c, remaining);
+                swap(gxs, c, remaining);
+                swap(gys, c, remaining);
+                swap(txs, c, remaining);
+                swap(tys, c, remaining);
+                active[remaining++] = active[c];
+            }
+            count = remaining;
+            if (count < BATCH_RECOVERY_MIN_NOTES || j + 1 == K) {
+                continue;
+            }
+
+            // (j + 1).gamma = j.gamma + gamma, dx is not zero as j.gamma is neither gamma nor -gamma for j >= 2
+            for (int c = 0; c < count; c++) {
+                dxs[c].sub(gxs[c], xs[c]);
+                if (c == 0) {
+                    prefixes[c].set(dxs[c]);
+                } else {
+                    prefixes[c].mul(prefixes[c - 1], dxs[c]);
+                }
+            }
+            inv.set(prefixes[count - 1].toFp().inverse());
+
+            for (int c = count - 1; c >= 0; c--) {
+                // lambda = (gamma.y - y) / dx
+                if (c == 0) {
+                    t.set(inv);
+                } else {
+                    t.mul(inv, prefixes[c - 1]);
+                    inv.mul(inv, dxs[c]);
+                }
+                lambda.sub(gys[c], ys[c]);
+                lambda.mul(lambda, t);
+
+                // x3 = lambda^2 - x - gamma.x, y3 = lambda * (x - x3) - y
+                t.squared(lambda);
+                t.sub(t, xs[c]);
+                t.sub(t, gxs[c]);
+                xs[c].sub(xs[c], t);
+                xs[c].mul(xs[c], lambda);
+                ys[c].sub(xs[c], ys[c]);
+                xs[c].set(t);
+            }
+        }
+
+        // too few notes left to pay for an inversion per step, each one goes on in Jacobian coordinates
+        for (int c = 0; c < count; c++) {
+            var i = active[c];
+            var found = new AtomicLong(-1);
+            scan(gammas[i], points[3 * i + 1], gammas[i], j, 1, K, found, new AtomicBoolean());
+            results[i] = found.get();
+        }
+
+        return results;
+    }
+
+    private static <T> void swap(T[] values, int i, int j) {
+        var value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    /**
+     * Recover an AZTEC note value from a decrypted point pair, searching kMin <= k < kMax with Pollard's kangaroo
+     *   method. Runs a few kangaroos per thread of the pool sharing a small table of distinguished points, takes about
+     *   2 * sqrt(kMax - kMin) group operations and little memory, for ranges beyond K_MAX or when a baby-step table
+     *   doesn't fit. The search is probabilistic and gives up after several times the expected work
+     * @param gamma the AZTEC note coordinate \gamma
+     * @param gammaK the AZTEC decrypted coordinate \gamma^{k}. Computed from \sigma.h^{-a}
+     * @param kMin lower bound of the note value, inclusive
+     * @param kMax upper bound of the note value, exclusive, at most 2^48 above kMin
+     * @param pool pool running the kangaroos, e.g. ForkJoinPool.commonPool()
+     * @return the value of the note
+     */
+    public static long recoverMessage(BN128Fp gamma, BN128Fp gammaK, long kMin, long kMax, ForkJoinPool pool)
+        throws Exception {
+        var k = PollardKangaroo.find(gamma, gammaK, kMin, kMax, pool);
+        if (k < 0) {
+            throw new Exception("could not find k!");
+        }
+        return k;
+    }
+
+    /**
+     * Brute-force recover an AZTEC note value by a linear scan of 1 <= k < K split between threads, with the same
+     *   results as recoverMessage(gamma, gammaK, K). Worker j starts at (j + 1).gamma and steps by threads.gamma, so
+     *   each one covers every threads-th value, and all stop as soon as one of them finds the note value
+     * @param gamma the AZTEC note coordinate \gamma
+     * @param gammaK the AZTEC decrypted coordinate \gamma^{k}. Computed from \sigma.h^{-a}
+     * @param K K_MAX
+     * @param executor executor running the workers, it should have that many threads free to run them side by side
+     * @param threads number of workers
+     * @param deadline time by which the search is abandoned
+     * @return the value of the note
+     * @throws TimeoutException if the value hasn't been found by the deadline
+     */
+    public static long recoverMessageParallel(
+        BN128Fp gamma,
+        BN128Fp gammaK,
+        int K,
+        Executor executor,
+        int threads,
+        Instant deadline
+    ) throws Exception {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
         if (gammaK.isZero()) {
             return 1;
         }
-        var gammaKAffine = gammaK.toAffine();
-        var accumulator = new BN128Fp(gamma.x(), gamma.y(), gamma.z());
-        int j = 1;
-        while (j < K) {
-            if (accumulator == gammaKAffine) {
-                break;
+        var target = gammaK.toAffine();
+        var stride = (BN128Fp) gamma.mul(BigInteger.valueOf(threads));
+
+        var found = new AtomicLong(-1);
+        var stop = new AtomicBoolean();
+        var error = new AtomicReference<Throwable>();
+        var workers = new CountDownLatch(threads);
+
+        try {
+            for (int w = 0; w < threads; w++) {
+                long start = w + 1;
+                executor.execute(() -> {
+                    try {
+                        scan(gamma, target, stride, start, threads, K, found, stop);
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                        stop.set(true);
+                    } finally {
+                        workers.countDown();
+                    }
+                });
             }
-            accumulator = (BN128Fp) accumulator.add(gamma);
-            j += 1;
+
+            long timeout = Duration.between(Instant.now(), deadline).toNanos();
+            if (!workers.await(timeout, TimeUnit.NANOSECONDS) && found.get() < 0) {
+                throw new TimeoutException("could not find k before the deadline!");
+            }
+        } finally {
+            // stops running workers and the ones still queued in the executor
+            stop.set(true);
+        }
+
+        if (error.get() != null) {
+            throw new ExecutionException(error.get());
         }
-        if (j == K) {
+        if (found.get() < 0) {
             throw new Exception("could not find k!");
         }
-        return j;
+        return found.get();
+    }
+
+    /**
+     * Compares start.gamma, (start + step).gamma, ... below K with the affine target, without allocating per step
+     */
+    private static void scan(
+        BN128Fp gamma,
+        BN128<Fp> target,
+        BN128Fp stride,
+        long start,
+        int step,
+        int K,
+        AtomicLong found,
+        AtomicBoolean stop
+    ) {
+        // workers taken from the executor's queue after the search is over don't pay for the multiplication
+        if (stop.get()) {
+            return;
+        }
+
+        var tx = new MutableFp(target.x());
+        var ty = new MutableFp(target.y());
+        var z2 = new MutableFp();
+        var t = new MutableFp();
+
+        var accumulator = new BN128Fp.Register();
+        if (start < K) {
+            accumulator.set(gamma.mul(BigInteger.valueOf(start)));
+        }
+
+        int sinceCheck = 0;
+        for (long j = start; j < K; j += step) {
+            if (sinceCheck == 0 && stop.get()) {
+                return;
+            }
+            if (++sinceCheck == RECOVERY_CHECK_INTERVAL) {
+                sinceCheck = 0;
+            }
+
+            // x == tx * z^2 and y == ty * z^3
+            if (!accumulator.isZero()) {
+                z2.squared(accumulator.z());
+                var xEquals = t.mul(tx, z2).valueEquals(accumulator.x());
+                if (xEquals && t.mul(ty, z2).mul(t, accumulator.z()).valueEquals(accumulator.y())) {
+                    found.set(j);
+                    stop.set(true);
+                    return;
+                }
+            }
+            stride.addInto(accumulator);
+        }
     }
 }
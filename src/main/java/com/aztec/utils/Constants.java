@@ -47,6 +47,12 @@ public class Constants {
      *  @default 0
      */
     public static final int K_MIN_TEST = 0;
+    /** Window width in bits of the fixed-base tables built for the generators g and h. Each table holds
+     *  (254 / w + 1) * 2^(w-1) affine points, so every extra bit doubles its size and build time
+     *  @constant FIXED_BASE_WINDOW
+     *  @default 8
+     */
+    public static final int FIXED_BASE_WINDOW = 8;
     /** Number of signatures per file in trusted setup database
      *  @constant SIGNATURES_PER_FILE
      *  @default 1000
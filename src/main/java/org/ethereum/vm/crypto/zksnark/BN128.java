@@ -17,6 +17,7 @@
  */
 package org.ethereum.vm.crypto.zksnark;
 
+import java.lang.reflect.Array;
 import java.math.BigInteger;
 
 /**
@@ -55,6 +56,12 @@ import java.math.BigInteger;
  * @since 05.09.2017
  */
 public abstract class BN128<T extends Field<T>> {
+    /**
+     * Width of the NAF used by {@link #mul(BigInteger)}, a 254-bit scalar then
+     * takes 8 precomputed points and about 42 additions
+     */
+    public static final int DEFAULT_WINDOW = 5;
+
     protected T x;
     protected T y;
     protected T z;
@@ -96,6 +103,41 @@ public abstract class BN128<T extends Field<T>> {
         return instance(ax, ay, one());
     }
 
+    /**
+     * Transforms all points to affine coordinates sharing one field inversion
+     * between them, see {@link Field#batchInverse(Field[], Field[])}. Results are
+     * the same as calling {@link #toAffine()} on each point
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static <T extends Field<T>> BN128<T>[] batchToAffine(BN128<T>[] points) {
+        BN128<T>[] res = (BN128<T>[]) new BN128[points.length];
+        if (points.length == 0) return res;
+
+        T[] zs = (T[]) Array.newInstance(points[0].z.getClass(), points.length);
+        for (int i = 0; i < points.length; i++) {
+            zs[i] = points[i].z;
+        }
+        T[] zInvs = Field.batchInverse(zs, zs.clone());
+
+        for (int i = 0; i < points.length; i++) {
+            BN128<T> p = points[i];
+
+            if (p.isZero()) {
+                BN128<T> zero = p.zero();
+                res[i] = p.instance(zero.x, p.one(), zero.z); // (0; 1; 0)
+                continue;
+            }
+
+            T zInv = zInvs[i];
+            T zInv2 = zInv.squared();
+            T zInv3 = zInv2.mul(zInv);
+
+            res[i] = p.instance(p.x.mul(zInv2), p.y.mul(zInv3), p.one());
+        }
+
+        return res;
+    }
+
     /**
      * Runs affine transformation and encodes point at infinity as (0; 0; 0)
      */
@@ -160,24 +202,114 @@ public abstract class BN128<T extends Field<T>> {
         return instance(x3, y3, z3);
     }
 
+    /**
+     * Same as {@link #mul(BigInteger, int)} with a window of
+     * {@link #DEFAULT_WINDOW} bits
+     */
     public BN128<T> mul(BigInteger s) {
-        if (s.compareTo(BigInteger.ZERO) == 0) return zero(); // P * 0 = 0
+        return mul(s, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Variable-base scalar multiplication over the width-"w" NAF of "s" (see
+     * {@link WNaf}), it takes a table of 2^(w-2) odd multiples of this point and
+     * roughly bitLength(s) / (w + 1) additions. Negative scalars multiply the
+     * negated point
+     */
+    public BN128<T> mul(BigInteger s, int w) {
+        if (s.signum() == 0) return zero(); // P * 0 = 0
 
         if (isZero()) return this; // 0 * s = 0
 
+        if (s.signum() < 0) return negate().mul(s.negate(), w);
+
+        int[] naf = WNaf.encode(s, w);
+        BN128<T>[] table = oddMultiples(w);
+
         BN128<T> res = zero();
 
-        for (int i = s.bitLength() - 1; i >= 0; i--) {
+        for (int i = naf.length - 1; i >= 0; i--) {
             res = res.dbl();
 
-            if (s.testBit(i)) {
-                res = res.add(this);
-            }
+            res = res.addDigit(table, naf[i]);
+        }
+
+        return res;
+    }
+
+    /**
+     * Returns k * P + a * Q <br/>
+     *
+     * Both products share one doubling chain: the width-{@link #DEFAULT_WINDOW}
+     * NAFs of "k" and "a" are walked together and each non-zero digit adds an
+     * odd multiple of its point (Straus' method), which is about the cost of a
+     * single {@link #mul(BigInteger)}
+     */
+    public static <T extends Field<T>> BN128<T> mulAdd(BigInteger k, BN128<T> p, BigInteger a, BN128<T> q) {
+        return p.mulAdd(k, a, q);
+    }
+
+    /**
+     * this * k + q * a, see {@link #mulAdd(BigInteger, BN128, BigInteger, BN128)}
+     */
+    protected BN128<T> mulAdd(BigInteger k, BigInteger a, BN128<T> q) {
+        if (k.signum() == 0 || isZero()) return q.mul(a);
+        if (a.signum() == 0 || q.isZero()) return mul(k);
+
+        if (k.signum() < 0) return negate().mulAdd(k.negate(), a, q);
+        if (a.signum() < 0) return mulAdd(k, a.negate(), q.negate());
+
+        int[] naf1 = WNaf.encode(k, DEFAULT_WINDOW);
+        int[] naf2 = WNaf.encode(a, DEFAULT_WINDOW);
+        BN128<T>[] table1 = oddMultiples(DEFAULT_WINDOW);
+        BN128<T>[] table2 = q.oddMultiples(DEFAULT_WINDOW);
+
+        BN128<T> res = zero();
+
+        for (int i = Math.max(naf1.length, naf2.length) - 1; i >= 0; i--) {
+            res = res.dbl();
+
+            if (i < naf1.length) res = res.addDigit(table1, naf1[i]);
+            if (i < naf2.length) res = res.addDigit(table2, naf2[i]);
         }
 
         return res;
     }
 
+    /**
+     * this + d * P for an odd NAF digit "d" and a table of odd multiples of P
+     */
+    private BN128<T> addDigit(BN128<T>[] table, int d) {
+        if (d > 0) return add(table[d >> 1]);
+        if (d < 0) return add(table[-d >> 1].negate());
+        return this;
+    }
+
+    /**
+     * P, 3P, 5P, ..., (2^(w-1) - 1)P
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private BN128<T>[] oddMultiples(int w) {
+        BN128<T>[] res = (BN128<T>[]) new BN128[1 << (w - 2)];
+        BN128<T> twice = dbl();
+
+        res[0] = this;
+        for (int i = 1; i < res.length; i++) {
+            res[i] = res[i - 1].add(twice);
+        }
+
+        return res;
+    }
+
+    /**
+     * Returns -P = (x; -y; z)
+     */
+    public BN128<T> negate() {
+        if (isZero()) return this;
+
+        return instance(x, y.negate(), z);
+    }
+
     private BN128<T> dbl() {
         if (isZero()) return this;
 
@@ -234,6 +366,21 @@ public abstract class BN128<T extends Field<T>> {
         return String.format("(%s; %s; %s)", x.toString(), y.toString(), z.toString());
     }
 
+    /**
+     * Checks whether two points are the same, unlike {@link #equals(Object)} it
+     * doesn't depend on the Jacobian representation: x1 * z2^2 = x2 * z1^2 and
+     * y1 * z2^3 = y2 * z1^3
+     */
+    public boolean pointEquals(BN128<T> o) {
+        if (isZero() || o.isZero()) return isZero() && o.isZero();
+
+        T z1z1 = z.squared();
+        T z2z2 = o.z.squared();
+
+        if (!x.mul(z2z2).equals(o.x.mul(z1z1))) return false;
+        return y.mul(z2z2.mul(o.z)).equals(o.y.mul(z1z1.mul(z)));
+    }
+
     @Override
     @SuppressWarnings("all")
     public boolean equals(Object o) {
@@ -19,11 +19,21 @@ package org.ethereum.vm.crypto.zksnark;
 
 import static org.ethereum.vm.crypto.zksnark.Params.B_Fp;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Definition of {@link BN128} over F_p, where "p" equals {@link Params#P} <br/>
  *
  * Curve equation: <br/>
  * Y^2 = X^3 + b, where "b" equals {@link Params#B_Fp} <br/>
+ * <br/>
+ *
+ * Besides the immutable API, points can be accumulated in a caller-owned
+ * {@link Register} with {@link #addInto(Register)} and
+ * {@link #dblInto(Register)}, these don't allocate anything once the register
+ * exists <br/>
  *
  * @author Mikhail Kalinin
  * @since 21.08.2017
@@ -56,6 +66,170 @@ public class BN128Fp extends BN128<Fp> {
         return Fp._1;
     }
 
+    @Override
+    public BN128<Fp> add(BN128<Fp> o) {
+        if (this.isZero()) return o; // 0 + P = P
+        if (o.isZero()) return this; // P + 0 = P
+
+        Register acc = new Register().set(this);
+        acc.add(o.x, o.y, o.z);
+        return acc.toPoint();
+    }
+
+    /**
+     * GLV multiplication: "s" is split into k1 + k2 * lambda (mod r) with both
+     * halves of about 127 bits (see {@link #glvSplit(BigInteger)}), then k1 * P +
+     * k2 * phi(P) is computed in one pass over the width-"w" NAFs of k1 and k2,
+     * where phi(x; y) = (beta * x; y) is {@link Params#GLV_BETA} endomorphism.
+     * This halves the doublings of {@link BN128#mul(BigInteger, int)} <br/>
+     *
+     * E(F_p) has prime order "r", so every point of the curve is in G1 and
+     * satisfies phi(P) = lambda * P
+     */
+    @Override
+    public BN128<Fp> mul(BigInteger s, int w) {
+        if (s.signum() == 0) return zero(); // P * 0 = 0
+
+        if (isZero()) return this; // 0 * s = 0
+
+        List<OddMultiples> tables = new ArrayList<>(2);
+        List<int[]> nafs = new ArrayList<>(2);
+        glvTerms(this, s, w, tables, nafs);
+
+        return interleave(tables, nafs);
+    }
+
+    /**
+     * Same as {@link BN128#mulAdd(BigInteger, BigInteger, BN128)}, both scalars
+     * are split with GLV, so the four halves share about 127 doublings
+     */
+    @Override
+    protected BN128<Fp> mulAdd(BigInteger k, BigInteger a, BN128<Fp> q) {
+        List<OddMultiples> tables = new ArrayList<>(4);
+        List<int[]> nafs = new ArrayList<>(4);
+        glvTerms(this, k, DEFAULT_WINDOW, tables, nafs);
+        glvTerms(q, a, DEFAULT_WINDOW, tables, nafs);
+
+        return interleave(tables, nafs);
+    }
+
+    /**
+     * Returns k1 * P + k2 * phi(P) = (k1 + k2 * lambda) * P for non-negative
+     * "k1" and "k2", which skips the GLV split of scalars that are already given
+     * by their halves
+     */
+    BN128<Fp> mulEndomorphism(BigInteger k1, BigInteger k2) {
+        if (isZero()) return this;
+
+        List<OddMultiples> tables = new ArrayList<>(2);
+        List<int[]> nafs = new ArrayList<>(2);
+        OddMultiples t = new OddMultiples(this, DEFAULT_WINDOW);
+
+        if (k1.signum() != 0) {
+            tables.add(t);
+            nafs.add(WNaf.encode(k1, DEFAULT_WINDOW));
+        }
+        if (k2.signum() != 0) {
+            tables.add(t.endomorphism());
+            nafs.add(WNaf.encode(k2, DEFAULT_WINDOW));
+        }
+
+        return interleave(tables, nafs);
+    }
+
+    /**
+     * Adds tables and NAFs of k1 * P and k2 * phi(P) for k = k1 + k2 * lambda,
+     * halves that are zero are skipped
+     */
+    private static void glvTerms(BN128<Fp> p, BigInteger s, int w, List<OddMultiples> tables, List<int[]> nafs) {
+        if (p.isZero()) return;
+
+        BigInteger[] k = glvSplit(s.mod(Params.R));
+        if (k[0].signum() == 0 && k[1].signum() == 0) return;
+
+        OddMultiples t = new OddMultiples(p, w);
+
+        if (k[0].signum() != 0) {
+            tables.add(k[0].signum() < 0 ? t.negate() : t);
+            nafs.add(WNaf.encode(k[0].abs(), w));
+        }
+        if (k[1].signum() != 0) {
+            OddMultiples phi = t.endomorphism();
+            tables.add(k[1].signum() < 0 ? phi.negate() : phi);
+            nafs.add(WNaf.encode(k[1].abs(), w));
+        }
+    }
+
+    /**
+     * Sum of d_i * P_i over all NAFs d and tables of P, one shared doubling per
+     * digit position (Straus' method)
+     */
+    private static BN128Fp interleave(List<OddMultiples> tables, List<int[]> nafs) {
+        int len = 0;
+        for (int[] naf : nafs) {
+            len = Math.max(len, naf.length);
+        }
+
+        Register acc = new Register();
+
+        for (int i = len - 1; i >= 0; i--) {
+            dblInto(acc);
+
+            for (int j = 0; j < nafs.size(); j++) {
+                int[] naf = nafs.get(j);
+                if (i < naf.length) tables.get(j).addInto(acc, naf[i]);
+            }
+        }
+
+        return acc.toPoint();
+    }
+
+    /**
+     * Returns (k1; k2) with k = k1 + k2 * lambda (mod r) and |k1|, |k2| < 2^127,
+     * "k" must be in [0, r) <br/>
+     *
+     * (k1; k2) = (k; 0) - c1 * (a1; b1) - c2 * (a2; b2), where c1 = round(b2 * k /
+     * r) and c2 = round(-b1 * k / r) are the coordinates of (k; 0) in the lattice
+     * basis
+     */
+    static BigInteger[] glvSplit(BigInteger k) {
+        BigInteger c1 = roundDiv(Params.GLV_B2.multiply(k), Params.R);
+        BigInteger c2 = roundDiv(Params.GLV_B1.negate().multiply(k), Params.R);
+
+        BigInteger k1 = k.subtract(c1.multiply(Params.GLV_A1)).subtract(c2.multiply(Params.GLV_A2));
+        BigInteger k2 = c1.multiply(Params.GLV_B1).add(c2.multiply(Params.GLV_B2)).negate();
+
+        return new BigInteger[] { k1, k2 };
+    }
+
+    /**
+     * round(a / b) for a >= 0 and b > 0
+     */
+    private static BigInteger roundDiv(BigInteger a, BigInteger b) {
+        return a.shiftLeft(1).add(b).divide(b.shiftLeft(1));
+    }
+
+    /**
+     * acc = acc + this
+     */
+    public void addInto(Register acc) {
+        acc.add(x, y, z);
+    }
+
+    /**
+     * acc = acc + o
+     */
+    public static void addInto(Register acc, Register o) {
+        acc.add(o.x.v, o.y.v, o.z.v);
+    }
+
+    /**
+     * acc = 2 * acc
+     */
+    public static void dblInto(Register acc) {
+        acc.dbl();
+    }
+
     /**
      * Checks whether x and y belong to Fp, then checks whether point with (x; y)
      * coordinates lays on the curve.
@@ -80,4 +254,291 @@ public class BN128Fp extends BN128<Fp> {
             return null;
         }
     }
+
+    /**
+     * P, 3P, 5P, ..., (2^(w-1) - 1)P in raw Jacobian coordinates, with negated y
+     * coordinates at hand, so a NAF digit of either sign is a single addition
+     */
+    static final class OddMultiples {
+        final Fp[] x, y, yNeg, z;
+
+        private OddMultiples(Fp[] x, Fp[] y, Fp[] yNeg, Fp[] z) {
+            this.x = x;
+            this.y = y;
+            this.yNeg = yNeg;
+            this.z = z;
+        }
+
+        OddMultiples(BN128<Fp> p, int w) {
+            int n = 1 << (w - 2);
+            x = new Fp[n];
+            y = new Fp[n];
+            yNeg = new Fp[n];
+            z = new Fp[n];
+
+            Register acc = new Register().set(p);
+            Register twice = new Register().set(p);
+            BN128Fp.dblInto(twice);
+
+            for (int i = 0; i < n; i++) {
+                if (i > 0) BN128Fp.addInto(acc, twice);
+
+                x[i] = acc.x.toFp();
+                y[i] = acc.y.toFp();
+                yNeg[i] = y[i].negate();
+                z[i] = acc.z.toFp();
+            }
+        }
+
+        /**
+         * Table of -P, -3P, ...
+         */
+        OddMultiples negate() {
+            return new OddMultiples(x, yNeg, y, z);
+        }
+
+        /**
+         * Table of phi(P), phi(3P), ..., phi(X; Y; Z) = (beta * X; Y; Z) in Jacobian
+         * coordinates
+         */
+        OddMultiples endomorphism() {
+            Fp[] bx = new Fp[x.length];
+            for (int i = 0; i < x.length; i++) {
+                bx[i] = x[i].mul(Params.GLV_BETA);
+            }
+            return new OddMultiples(bx, y, yNeg, z);
+        }
+
+        /**
+         * acc = acc + d * P for an odd NAF digit "d", does nothing if "d" is zero
+         */
+        void addInto(Register acc, int d) {
+            if (d > 0) {
+                acc.add(x[d >> 1], y[d >> 1], z[d >> 1]);
+            } else if (d < 0) {
+                acc.add(x[-d >> 1], yNeg[-d >> 1], z[-d >> 1]);
+            }
+        }
+    }
+
+    /**
+     * Mutable point in Jacobian coordinates together with the scratch space its
+     * arithmetic needs. A register starts as the point at infinity, it is not
+     * thread safe and is meant to be reused by its owner
+     */
+    public static final class Register {
+        final MutableFp x = new MutableFp();
+        final MutableFp y = new MutableFp();
+        final MutableFp z = new MutableFp();
+
+        // scratch
+        private final Fp t0 = new Fp(), t1 = new Fp(), t2 = new Fp(), t3 = new Fp(), t4 = new Fp();
+        private final Fp t5 = new Fp(), t6 = new Fp(), t7 = new Fp(), t8 = new Fp();
+
+        public Register set(BN128<Fp> p) {
+            x.set(p.x);
+            y.set(p.y);
+            z.set(p.z);
+            return this;
+        }
+
+        public Register set(Register o) {
+            x.set(o.x);
+            y.set(o.y);
+            z.set(o.z);
+            return this;
+        }
+
+        public Register setZero() {
+            x.set(Fp.ZERO);
+            y.set(Fp.ZERO);
+            z.set(Fp.ZERO);
+            return this;
+        }
+
+        public MutableFp x() {
+            return x;
+        }
+
+        public MutableFp y() {
+            return y;
+        }
+
+        public MutableFp z() {
+            return z;
+        }
+
+        public boolean isZero() {
+            return z.isZero();
+        }
+
+        /**
+         * Copies current value into a new immutable point
+         */
+        public BN128Fp toPoint() {
+            return new BN128Fp(x.toFp(), y.toFp(), z.toFp());
+        }
+
+        /**
+         * Same formulas as {@link BN128#add(BN128)}, "o" must not share its
+         * coordinates with this register
+         */
+        void add(Fp x2, Fp y2, Fp z2) {
+            if (z2.isZero()) return; // P + 0 = P
+            if (isZero()) { // 0 + P = P
+                x.set(x2);
+                y.set(y2);
+                z.set(z2);
+                return;
+            }
+
+            Fp x1 = x.v, y1 = y.v, z1 = z.v;
+            Fp z1z1 = t0, z2z2 = t1, u1 = t2, u2 = t3, s1 = t4, s2 = t5;
+
+            Fp.mul(z1z1, z1, z1);
+            Fp.mul(z2z2, z2, z2);
+
+            Fp.mul(u1, x1, z2z2);
+            Fp.mul(u2, x2, z1z1);
+
+            Fp.mul(s1, z2, z2z2);
+            Fp.mul(s1, y1, s1); // s1 = y1 * Z2^3
+            Fp.mul(s2, z1, z1z1);
+            Fp.mul(s2, y2, s2); // s2 = y2 * Z1^3
+
+            if (u1.equals(u2) && s1.equals(s2)) {
+                dbl(); // P + P = 2P
+                return;
+            }
+
+            Fp h = t6, i = t7, j = t8, r = u2, v = u1;
+
+            Fp.sub(h, u2, u1); // h = u2 - u1
+            Fp.add(i, h, h);
+            Fp.mul(i, i, i); // i = (2 * h)^2
+            Fp.mul(j, h, i); // j = h * i
+            Fp.sub(r, s2, s1);
+            Fp.add(r, r, r); // r = 2 * (s2 - s1)
+            Fp.mul(v, u1, i); // v = u1 * i
+
+            // z3 = ((z1 + z2)^2 - z1^2 - z2^2) * h
+            Fp.add(z1, z1, z2);
+            Fp.mul(z1, z1, z1);
+            Fp.sub(z1, z1, z1z1);
+            Fp.sub(z1, z1, z2z2);
+            Fp.mul(z1, z1, h);
+
+            // x3 = r^2 - j - 2 * v
+            Fp.mul(x1, r, r);
+            Fp.sub(x1, x1, j);
+            Fp.sub(x1, x1, v);
+            Fp.sub(x1, x1, v);
+
+            // y3 = r * (v - x3) - 2 * (s1 * j)
+            Fp.mul(s1, s1, j);
+            Fp.add(s1, s1, s1);
+            Fp.sub(y1, v, x1);
+            Fp.mul(y1, y1, r);
+            Fp.sub(y1, y1, s1);
+        }
+
+        /**
+         * Mixed addition of an affine point (x2; y2; 1), "madd-2007-bl" from the
+         * <a href=
+         * "https://hyperelliptic.org/EFD/g1p/auto-shortw-jacobian-0.html">EFD</a>,
+         * saves four multiplications against {@link #add(Fp, Fp, Fp)}
+         */
+        void addAffine(Fp x2, Fp y2) {
+            if (isZero()) { // 0 + P = P
+                x.set(x2);
+                y.set(y2);
+                z.set(Fp._1);
+                return;
+            }
+
+            Fp x1 = x.v, y1 = y.v, z1 = z.v;
+            Fp z1z1 = t0, u2 = t1, s2 = t2, h = t3, hh = t4, i = t5, j = t6, r = t7, v = t8;
+
+            Fp.mul(z1z1, z1, z1);
+            Fp.mul(u2, x2, z1z1); // u2 = x2 * z1^2
+            Fp.mul(s2, z1, z1z1);
+            Fp.mul(s2, y2, s2); // s2 = y2 * z1^3
+
+            Fp.sub(h, u2, x1); // h = u2 - x1
+            Fp.sub(r, s2, y1);
+            Fp.add(r, r, r); // r = 2 * (s2 - y1)
+
+            if (h.isZero() && r.isZero()) {
+                dbl(); // P + P = 2P
+                return;
+            }
+
+            Fp.mul(hh, h, h); // hh = h^2
+            Fp.add(i, hh, hh);
+            Fp.add(i, i, i); // i = 4 * hh
+            Fp.mul(j, h, i); // j = h * i
+            Fp.mul(v, x1, i); // v = x1 * i
+
+            // z3 = (z1 + h)^2 - z1z1 - hh
+            Fp.add(z1, z1, h);
+            Fp.mul(z1, z1, z1);
+            Fp.sub(z1, z1, z1z1);
+            Fp.sub(z1, z1, hh);
+
+            // x3 = r^2 - j - 2 * v
+            Fp.mul(x1, r, r);
+            Fp.sub(x1, x1, j);
+            Fp.sub(x1, x1, v);
+            Fp.sub(x1, x1, v);
+
+            // y3 = r * (v - x3) - 2 * y1 * j
+            Fp.mul(j, y1, j);
+            Fp.add(j, j, j);
+            Fp.sub(y1, v, x1);
+            Fp.mul(y1, y1, r);
+            Fp.sub(y1, y1, j);
+        }
+
+        /**
+         * Same formulas as BN128.dbl()
+         */
+        void dbl() {
+            if (isZero()) return;
+
+            Fp x1 = x.v, y1 = y.v, z1 = z.v;
+            Fp a = t0, b = t1, c = t2, d = t3, e = t4;
+
+            Fp.mul(a, x1, x1); // a = x^2
+            Fp.mul(b, y1, y1); // b = y^2
+            Fp.mul(c, b, b); // c = b^2
+
+            // d = 2 * ((x + b)^2 - a - c)
+            Fp.add(d, x1, b);
+            Fp.mul(d, d, d);
+            Fp.sub(d, d, a);
+            Fp.sub(d, d, c);
+            Fp.add(d, d, d);
+
+            // e = 3 * a
+            Fp.add(e, a, a);
+            Fp.add(e, e, a);
+
+            // z3 = 2 * y * z
+            Fp.mul(z1, y1, z1);
+            Fp.add(z1, z1, z1);
+
+            // x3 = e^2 - 2 * d
+            Fp.mul(x1, e, e);
+            Fp.sub(x1, x1, d);
+            Fp.sub(x1, x1, d);
+
+            // y3 = e * (d - x3) - 8 * c
+            Fp.sub(y1, d, x1);
+            Fp.mul(y1, e, y1);
+            Fp.add(c, c, c);
+            Fp.add(c, c, c);
+            Fp.add(c, c, c);
+            Fp.sub(y1, y1, c);
+        }
+    }
 }
@@ -0,0 +1,198 @@
+package org.ethereum.vm.crypto.zksnark;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shanks' baby-step giant-step search of "k" with T = k * G for "k" in a short
+ * interval <br/>
+ * <br/>
+ *
+ * The table holds affine x of j * G for 1 <= j <= m, keyed by x, and since
+ * -j * G has the same x it answers for every j in [-m, m]. A search walks
+ * giant steps Q_i = T - (c + i * (2m + 1)) * G from the middle "c" of the
+ * first 2m + 1 candidates and looks each Q_i up, a hit on j * G gives k = c + i
+ * * (2m + 1) + j, the sign of j coming from y. An interval of "n" values takes
+ * about n / 2m giant steps, so m = sqrt(n / 2) balances both phases at about
+ * sqrt(2n) group operations <br/>
+ *
+ * Giant steps are mixed additions in Jacobian coordinates and are normalized to
+ * affine in batches that share one field inversion, as is the table <br/>
+ *
+ * The table is immutable once built and can be shared between threads
+ */
+public final class BabyStepGiantStep {
+    // giant steps normalized with one inversion
+    static final int BATCH = 128;
+
+    private final int m;
+
+    // x of j * G to j, and y of j * G at j - 1
+    private final Map<Fp, Integer> table;
+    private final Fp[] ys;
+
+    // affine -(2m + 1) * G
+    private final Fp stepX;
+    private final Fp stepY;
+
+    private final BN128<Fp> base;
+
+    /**
+     * Builds the table of "m" baby steps of "base"
+     */
+    public BabyStepGiantStep(BN128<Fp> base, int m) {
+        if (m < 1) throw new IllegalArgumentException("Number of baby steps must be positive");
+        if (base.isZero()) throw new IllegalArgumentException("Base point is the point at infinity");
+
+        this.base = base;
+        this.m = m;
+
+        BN128<Fp> g = base.toAffine();
+
+        Fp[] jx = new Fp[m], jy = new Fp[m], jz = new Fp[m];
+        BN128Fp.Register acc = new BN128Fp.Register();
+        for (int j = 0; j < m; j++) {
+            acc.addAffine(g.x, g.y);
+            jx[j] = acc.x.toFp();
+            jy[j] = acc.y.toFp();
+            jz[j] = acc.z.toFp();
+        }
+
+        Fp[] zInvs = Fp.batchInverse(jz);
+
+        this.table = new HashMap<>(m * 2);
+        this.ys = new Fp[m];
+        for (int j = 0; j < m; j++) {
+            Fp zInv2 = zInvs[j].squared();
+            table.put(jx[j].mul(zInv2), j + 1);
+            ys[j] = jy[j].mul(zInv2.mul(zInvs[j]));
+        }
+
+        BN128<Fp> step = base.mul(BigInteger.valueOf(2L * m + 1)).negate().toAffine();
+        this.stepX = step.x;
+        this.stepY = step.y;
+    }
+
+    /**
+     * Number of baby steps that minimizes the work of a search over "n" values
+     */
+    public static int babySteps(long n) {
+        return (int) Math.max(1, Math.ceil(Math.sqrt(n / 2.0)));
+    }
+
+    public int size() {
+        return m;
+    }
+
+    /**
+     * Returns "k" in [from, to) such that target = k * G, or -1 if there is no
+     * such "k"
+     */
+    public long find(BN128<Fp> target, long from, long to) {
+        Search search = search(target, from, to);
+        while (!search.advance()) {}
+        return search.result();
+    }
+
+    /**
+     * Starts a search of "k" in [from, to) such that target = k * G, run by
+     * {@link Search#advance()} a batch of giant steps at a time, so that the
+     * caller can give up between two batches
+     */
+    public Search search(BN128<Fp> target, long from, long to) {
+        return new Search(target, from, to);
+    }
+
+    /**
+     * A search in progress, not thread safe
+     */
+    public final class Search {
+        private final long from;
+        private final long to;
+        private final long width = 2L * m + 1;
+        private final long center;
+        private final long steps;
+
+        // Q_i = T - (center + i * width) * G
+        private final BN128Fp.Register q = new BN128Fp.Register();
+        private long i;
+        private long result = -1;
+        private boolean done;
+
+        private Fp[] xs = new Fp[BATCH], ys = new Fp[BATCH], zs = new Fp[BATCH];
+
+        private Search(BN128<Fp> target, long from, long to) {
+            this.from = from;
+            this.to = to;
+            this.center = from + m;
+            this.steps = from < to ? (to - from - 1) / width + 1 : 0;
+            this.done = steps == 0;
+
+            if (!done) q.set(target.add(base.mul(BigInteger.valueOf(center)).negate()));
+        }
+
+        /**
+         * Takes the next batch of giant steps, returns true once the search is
+         * over
+         */
+        public boolean advance() {
+            if (done) return true;
+
+            int n = (int) Math.min(BATCH, steps - i);
+            if (n < xs.length) {
+                xs = Arrays.copyOf(xs, n);
+                ys = Arrays.copyOf(ys, n);
+                zs = Arrays.copyOf(zs, n);
+            }
+
+            for (int s = 0; s < n; s++) {
+                xs[s] = q.x.toFp();
+                ys[s] = q.y.toFp();
+                zs[s] = q.z.toFp();
+                q.addAffine(stepX, stepY);
+            }
+
+            Fp[] zInvs = Fp.batchInverse(zs);
+
+            for (int s = 0; s < n; s++) {
+                long k = center + (i + s) * width;
+
+                if (!zs[s].isZero()) {
+                    Fp zInv2 = zInvs[s].squared();
+                    Integer j = table.get(xs[s].mul(zInv2));
+                    if (j == null) continue;
+
+                    boolean positive = ys[s].mul(zInv2.mul(zInvs[s])).equals(BabyStepGiantStep.this.ys[j - 1]);
+                    k += positive ? j : -j;
+                }
+
+                if (k >= from && k < to) {
+                    i += s + 1;
+                    result = k;
+                    done = true;
+                    return true;
+                }
+            }
+
+            i += n;
+            done = i == steps;
+            return done;
+        }
+
+        /**
+         * "k" if it has been found, -1 otherwise
+         */
+        public long result() {
+            return result;
+        }
+
+        /**
+         * Number of giant steps taken so far
+         */
+        public long steps() {
+            return i;
+        }
+    }
+}
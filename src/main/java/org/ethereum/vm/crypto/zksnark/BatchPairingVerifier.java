@@ -0,0 +1,193 @@
+package org.ethereum.vm.crypto.zksnark;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks many independent pairing products at once <br/>
+ * <br/>
+ *
+ * Every equation prod_j e(P_ij, Q_ij) = 1 is raised to one of 2^128 random
+ * non-zero powers r_i, applied to its G1 points, and all the equations are
+ * multiplied together: prod_i prod_j e(r_i * P_ij, Q_ij) = 1. The product takes
+ * one multi-pair Miller loop and one final exponentiation for the whole batch,
+ * and it fails with probability at least 1 - 2^-128 if any of the equations
+ * fails <br/>
+ *
+ * A power is drawn as r_i = a + b * lambda with random 64-bit "a" and "b",
+ * where lambda is {@link Params#GLV_LAMBDA}: r_i * P = a * P + b * phi(P) then
+ * takes 64 doublings instead of 128, and distinct (a, b) give distinct powers
+ * since the GLV lattice has no vectors that short <br/>
+ *
+ * Pairs sharing the same G2 point, i.e. the same {@link PreparedG2} instance or
+ * the same {@link BN128G2} instance, are merged into one pair with the sum of
+ * their G1 points: prod_i e(P_i, Q) = e(sum_i P_i, Q). A batch of equations
+ * over the same few G2 points, like the common reference string, thus costs a
+ * Miller loop per distinct G2 point <br/>
+ *
+ * Precomputed factors of the equations (see {@link PairingCheck#addFactor(Fp12)})
+ * are raised to the same powers, a factor shared by several equations takes a
+ * single exponentiation by the sum of their powers <br/>
+ *
+ * A failed batch is bisected to find the failing equations, each half is
+ * checked with the same powers, a half is known to fail without a check if its
+ * sibling holds <br/>
+ * <br/>
+ *
+ * Usage:
+ * <ul>
+ * <li>fill {@link PairingCheck} instances with pairs, but don't run them, nor
+ * reset or release them before the batch has run</li>
+ * <li>add them with {@link #add(PairingCheck)}</li>
+ * <li>run the batch with {@link #run()}</li>
+ * <li>get result with {@link #result()} and indices of failed equations with
+ * {@link #failed()}</li>
+ * </ul>
+ */
+public final class BatchPairingVerifier {
+    static final int RANDOMIZER_BITS = 128;
+
+    private final Random random;
+    private final List<PairingCheck> equations = new ArrayList<>();
+    private final List<Integer> failed = new ArrayList<>();
+
+    private BatchPairingVerifier(Random random) {
+        this.random = random;
+    }
+
+    public static BatchPairingVerifier create() {
+        return new BatchPairingVerifier(new SecureRandom());
+    }
+
+    /**
+     * Batch verifier drawing its powers from the given source, which has to be
+     * unpredictable for whoever supplies the equations
+     */
+    public static BatchPairingVerifier create(Random random) {
+        return new BatchPairingVerifier(random);
+    }
+
+    /**
+     * Adds an equation, its index in {@link #failed()} is the number of
+     * equations added before it
+     */
+    public void add(PairingCheck equation) {
+        equations.add(equation);
+    }
+
+    public void run() {
+        failed.clear();
+        if (equations.isEmpty()) return;
+
+        // every distinct G2 point is prepared once for the whole batch
+        Map<BN128G2, PreparedG2> prepared = new IdentityHashMap<>();
+
+        List<Randomized> randomized = new ArrayList<>(equations.size());
+        for (PairingCheck equation : equations) {
+            randomized.add(randomize(equation, prepared));
+        }
+
+        bisect(randomized, 0, randomized.size(), false);
+    }
+
+    public int result() {
+        return failed.isEmpty() ? 1 : 0;
+    }
+
+    /**
+     * Indices of failed equations in ascending order
+     */
+    public List<Integer> failed() {
+        return Collections.unmodifiableList(failed);
+    }
+
+    // pairs of the equation with G1 points multiplied by a random power and prepared G2 points
+    private Randomized randomize(PairingCheck equation, Map<BN128G2, PreparedG2> prepared) {
+        BigInteger a, b;
+        do {
+            a = new BigInteger(RANDOMIZER_BITS / 2, random);
+            b = new BigInteger(RANDOMIZER_BITS / 2, random);
+        } while (a.signum() == 0 && b.signum() == 0);
+
+        List<PairingCheck.Pair> pairs = new ArrayList<>(equation.pairs.size());
+        for (PairingCheck.Pair pair : equation.pairs) {
+            if (pair.isZero()) continue;
+
+            BN128G1 g1 = new BN128G1(pair.g1.mulEndomorphism(a, b));
+            PreparedG2 g2 = pair.prepared != null ? pair.prepared : prepared.computeIfAbsent(pair.g2, PreparedG2::of);
+            pairs.add(PairingCheck.Pair.of(g1, g2));
+        }
+
+        BigInteger power = a.add(b.multiply(Params.GLV_LAMBDA)).mod(Params.R);
+        return new Randomized(pairs, equation.factors, power);
+    }
+
+    /**
+     * Collects failed equations of [from, to), "knownToFail" skips the check of the
+     * whole range
+     */
+    private void bisect(List<Randomized> randomized, int from, int to, boolean knownToFail) {
+        if (!knownToFail && holds(randomized, from, to)) return;
+
+        // r_i is non-zero modulo "r", so a single equation fails exactly when its power does
+        if (to - from == 1) {
+            failed.add(from);
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+        if (holds(randomized, from, mid)) {
+            bisect(randomized, mid, to, true);
+        } else {
+            bisect(randomized, from, mid, true);
+            bisect(randomized, mid, to, false);
+        }
+    }
+
+    private static boolean holds(List<Randomized> randomized, int from, int to) {
+        // G1 sums by G2 point and sums of powers by precomputed factor
+        Map<PreparedG2, BN128<Fp>> sums = new IdentityHashMap<>();
+        Map<Fp12, BigInteger> powers = new IdentityHashMap<>();
+        for (int i = from; i < to; i++) {
+            Randomized equation = randomized.get(i);
+            for (PairingCheck.Pair pair : equation.pairs) {
+                sums.merge(pair.prepared, pair.g1, BN128::add);
+            }
+            for (Fp12 gt : equation.factors) {
+                powers.merge(gt, equation.power, BigInteger::add);
+            }
+        }
+
+        List<PairingCheck.Pair> pairs = new ArrayList<>(sums.size());
+        for (Map.Entry<PreparedG2, BN128<Fp>> sum : sums.entrySet()) {
+            pairs.add(PairingCheck.Pair.of(new BN128G1(sum.getValue()), sum.getKey()));
+        }
+
+        Fp12 miller = PairingCheck.millerLoop(pairs);
+        Fp12 res = PairingCheck.finalExponentiation(miller);
+
+        for (Map.Entry<Fp12, BigInteger> power : powers.entrySet()) {
+            res = res.mul(power.getKey().cyclotomicExpCompressed(power.getValue().mod(Params.R)));
+        }
+
+        return res.equals(Fp12._1);
+    }
+
+    private static final class Randomized {
+        final List<PairingCheck.Pair> pairs;
+        final List<Fp12> factors;
+        final BigInteger power;
+
+        Randomized(List<PairingCheck.Pair> pairs, List<Fp12> factors, BigInteger power) {
+            this.pairs = pairs;
+            this.factors = factors;
+            this.power = power;
+        }
+    }
+}
@@ -41,4 +41,41 @@ interface Field<T> {
     boolean isZero();
 
     boolean isValid();
+
+    /**
+     * Inverts every element of "els" into "res" with a single call to
+     * {@link #inverse()} (Montgomery's trick), at the cost of three
+     * multiplications per element. Zero elements have no inverse and are copied
+     * to "res" as they are
+     */
+    static <T extends Field<T>> T[] batchInverse(T[] els, T[] res) {
+        // res[i] = product of all non-zero elements before i, null if there are none
+        T acc = null;
+        for (int i = 0; i < els.length; i++) {
+            if (els[i].isZero()) {
+                res[i] = els[i];
+                continue;
+            }
+            res[i] = acc;
+            acc = acc == null ? els[i] : acc.mul(els[i]);
+        }
+
+        if (acc == null) return res;
+
+        // walk back, peeling one element off the inverted product at a time
+        T inv = acc.inverse();
+        for (int i = els.length - 1; i >= 0; i--) {
+            if (els[i].isZero()) continue;
+
+            if (res[i] == null) {
+                res[i] = inv;
+            } else {
+                T prefix = res[i];
+                res[i] = inv.mul(prefix);
+                inv = inv.mul(els[i]);
+            }
+        }
+
+        return res;
+    }
 }
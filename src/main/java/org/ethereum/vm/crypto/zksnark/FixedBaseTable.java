@@ -0,0 +1,128 @@
+package org.ethereum.vm.crypto.zksnark;
+
+import java.math.BigInteger;
+
+/**
+ * Precomputed multiples of a fixed {@link BN128Fp} point for scalar
+ * multiplication without doublings <br/>
+ * <br/>
+ *
+ * A scalar reduced modulo {@link Params#R} is split into signed base 2^w
+ * digits d_j in [-2^(w-1), 2^(w-1)], and the table holds the affine points i *
+ * 2^(w*j) * P for 1 <= i <= 2^(w-1) and every window j. A multiplication is
+ * then a sum of one table point per non-zero digit, done with mixed additions
+ * <br/>
+ *
+ * The table takes (254 / w + 1) * 2^(w-1) points, that is 4096 points and
+ * about half a megabyte for a window of 8 bits. It is immutable once built and
+ * can be shared between threads
+ */
+public final class FixedBaseTable {
+    private static final int SCALAR_BITS = Params.R.bitLength();
+
+    private final BN128<Fp> base;
+    private final int w;
+    private final int windows;
+
+    // affine coordinates of i * 2^(w*j) * P at [j][i - 1]
+    private final Fp[][] xs;
+    private final Fp[][] ys;
+
+    public FixedBaseTable(BN128<Fp> base, int w) {
+        if (w < 2 || w > 16) throw new IllegalArgumentException("Window width must be in [2, 16]");
+        if (base.isZero()) throw new IllegalArgumentException("Base point is the point at infinity");
+
+        this.base = base;
+        this.w = w;
+        // the top window always has a zero top bit, so it can take the last carry
+        this.windows = SCALAR_BITS / w + 1;
+
+        int n = 1 << (w - 1);
+        this.xs = new Fp[windows][n];
+        this.ys = new Fp[windows][n];
+
+        // Jacobian multiples first, then one shared inversion for all of them
+        Fp[] jx = new Fp[windows * n], jy = new Fp[windows * n], jz = new Fp[windows * n];
+
+        BN128Fp.Register windowBase = new BN128Fp.Register().set(base);
+        BN128Fp.Register acc = new BN128Fp.Register();
+
+        for (int j = 0; j < windows; j++) {
+            acc.set(windowBase);
+
+            for (int i = 0; i < n; i++) {
+                if (i > 0) BN128Fp.addInto(acc, windowBase);
+
+                jx[j * n + i] = acc.x.toFp();
+                jy[j * n + i] = acc.y.toFp();
+                jz[j * n + i] = acc.z.toFp();
+            }
+
+            // 2^(w*(j+1)) * P = 2 * (2^(w-1) * 2^(w*j) * P)
+            windowBase.set(acc);
+            BN128Fp.dblInto(windowBase);
+        }
+
+        Fp[] zInvs = Fp.batchInverse(jz);
+
+        for (int j = 0; j < windows; j++) {
+            for (int i = 0; i < n; i++) {
+                Fp zInv = zInvs[j * n + i];
+                Fp zInv2 = zInv.squared();
+                Fp zInv3 = zInv2.mul(zInv);
+
+                xs[j][i] = jx[j * n + i].mul(zInv2);
+                ys[j][i] = jy[j * n + i].mul(zInv3);
+            }
+        }
+    }
+
+    public BN128<Fp> base() {
+        return base;
+    }
+
+    public int window() {
+        return w;
+    }
+
+    /**
+     * Returns s * P, negative scalars and scalars above "r" are reduced modulo "r"
+     */
+    public BN128Fp mul(BigInteger s) {
+        BN128Fp.Register acc = new BN128Fp.Register();
+        mulInto(acc, s);
+        return acc.toPoint();
+    }
+
+    /**
+     * acc = s * P, the register is overwritten
+     */
+    public void mulInto(BN128Fp.Register acc, BigInteger s) {
+        acc.setZero();
+
+        BigInteger k = s.mod(Params.R);
+        if (k.signum() == 0) return;
+
+        Fp yNeg = new Fp();
+        int half = 1 << (w - 1);
+        int carry = 0;
+
+        for (int j = 0; j < windows; j++) {
+            int d = carry;
+            for (int b = 0; b < w; b++) {
+                if (k.testBit(j * w + b)) d += 1 << b;
+            }
+
+            // signed digit in [-2^(w-1), 2^(w-1)], borrowing from the next window
+            carry = d > half ? 1 : 0;
+            d -= carry << w;
+
+            if (d > 0) {
+                acc.addAffine(xs[j][d - 1], ys[j][d - 1]);
+            } else if (d < 0) {
+                Fp.negate(yNeg, ys[j][-d - 1]);
+                acc.addAffine(xs[j][-d - 1], yNeg);
+            }
+        }
+    }
+}
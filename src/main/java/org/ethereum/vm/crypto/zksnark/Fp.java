@@ -18,19 +18,41 @@
 package org.ethereum.vm.crypto.zksnark;
 
 import static org.ethereum.vm.crypto.zksnark.Params.P;
-import static org.ethereum.vm.crypto.zksnark.TonelliShanks.ts;
 
 import java.math.BigInteger;
-import java.util.Objects;
 
 /**
  * Arithmetic in F_p, p =
  * 21888242871839275222246405745257275088696311157297823662689037894645226208583
+ * <br/>
+ * <br/>
+ *
+ * Elements are kept in Montgomery form "v * 2^256 mod p" spread over four
+ * 64-bit little-endian limbs, multiplication is done with CIOS Montgomery
+ * reduction and additions use a conditional subtraction instead of a division.
+ * {@link BigInteger} is only touched when converting from and to the outside
+ * world: {@link #Fp(BigInteger)}, {@link #create(BigInteger)},
+ * {@link #toBigInteger()} and {@link #bytes()} <br/>
  *
  * @author Mikhail Kalinin
  * @since 01.09.2017
  */
 public class Fp implements Field<Fp> {
+    // modulus limbs, little-endian
+    static final long P0 = 0x3c208c16d87cfd47L;
+    static final long P1 = 0x97816a916871ca8dL;
+    static final long P2 = 0xb85045b68181585dL;
+    static final long P3 = 0x30644e72e131a029L;
+
+    // 2^512 mod p, used to move a value into Montgomery form
+    private static final long R2_0 = 0xf32cfc5b538afa89L;
+    private static final long R2_1 = 0xb5e71911d44501fbL;
+    private static final long R2_2 = 0x47ab1eff0a417ff6L;
+    private static final long R2_3 = 0x06d89f71cab8351fL;
+
+    // -p^-1 mod 2^64
+    static final long INV = 0x87d20782e4866389L;
+
     public static final Fp ZERO = new Fp(BigInteger.ZERO);
     public static final Fp _1 = new Fp(BigInteger.ONE);
     public static final Fp _2 = new Fp(BigInteger.TWO);
@@ -40,62 +62,201 @@ public class Fp implements Field<Fp> {
 
     public static final Fp _2_INV = new Fp(BigInteger.valueOf(2).modInverse(P));
 
-    BigInteger v;
+    // Montgomery form limbs, little-endian
+    long v0;
+    long v1;
+    long v2;
+    long v3;
 
-    public BigInteger toBigInteger() {
-        return v;
-    }
+    Fp() {}
 
     public Fp(BigInteger v) {
-        this.v = v;
+        if (v.signum() < 0 || !isCanonical(v)) {
+            v = v.mod(P);
+        }
+        long l0 = v.longValue();
+        long l1 = v.shiftRight(64).longValue();
+        long l2 = v.shiftRight(128).longValue();
+        long l3 = v.shiftRight(192).longValue();
+        mul(this, l0, l1, l2, l3, R2_0, R2_1, R2_2, R2_3);
+    }
+
+    public BigInteger toBigInteger() {
+        Fp r = new Fp();
+        mul(r, v0, v1, v2, v3, 1, 0, 0, 0);
+
+        byte[] bytes = new byte[32];
+        putLong(bytes, 0, r.v3);
+        putLong(bytes, 8, r.v2);
+        putLong(bytes, 16, r.v1);
+        putLong(bytes, 24, r.v0);
+        return new BigInteger(1, bytes);
     }
 
     @Override
     public Fp add(Fp o) {
-        return new Fp(this.v.add(o.v).mod(P));
+        Fp r = new Fp();
+        add(r, this, o);
+        return r;
     }
 
     @Override
     public Fp mul(Fp o) {
-        return new Fp(this.v.multiply(o.v).mod(P));
+        Fp r = new Fp();
+        mul(r, this, o);
+        return r;
     }
 
     @Override
     public Fp sub(Fp o) {
-        return new Fp(this.v.subtract(o.v).mod(P));
+        Fp r = new Fp();
+        sub(r, this, o);
+        return r;
     }
 
     @Override
     public Fp squared() {
-        return new Fp(v.multiply(v).mod(P));
+        Fp r = new Fp();
+        mul(r, this, this);
+        return r;
     }
 
+    /**
+     * Square root. As p = 3 mod 4 a root of "v" is v^((p + 1) / 4), the same
+     * exponentiation also tells whether "v" is a square: it is iff the result
+     * squares back to "v"
+     */
     public Fp sqrt() throws Exception {
-        var solution = ts(this.v, P);
-        if (!solution.exists) {
+        Fp r = sqrtCandidate();
+
+        Fp r2 = new Fp();
+        mul(r2, r, r);
+        if (!r2.equals(this)) {
             throw new Exception("Not a square");
         }
-        return new Fp(solution.root1);
+        return r;
+    }
+
+    /**
+     * v^((p + 1) / 4) by a fixed sliding window addition chain (window 5): 15
+     * multiplications for the odd powers table, then 250 squarings and 38
+     * multiplications
+     */
+    private Fp sqrtCandidate() {
+        // odd[i] = v^(2 * i + 1)
+        Fp[] odd = new Fp[16];
+        Fp sq = new Fp();
+        mul(sq, this, this);
+        odd[0] = this;
+        for (int i = 1; i < odd.length; i++) {
+            odd[i] = new Fp();
+            mul(odd[i], odd[i - 1], sq);
+        }
+
+        Fp r = new Fp();
+        r.set(odd[1]); // x^3
+        sqrMul(r, 10, odd[12]);
+        sqrMul(r, 8, odd[9]);
+        sqrMul(r, 5, odd[9]);
+        sqrMul(r, 4, odd[4]);
+        sqrMul(r, 4, odd[3]);
+        sqrMul(r, 9, odd[9]);
+        sqrMul(r, 7, odd[6]);
+        sqrMul(r, 10, odd[2]);
+        sqrMul(r, 7, odd[13]);
+        sqrMul(r, 1, odd[0]);
+        sqrMul(r, 7, odd[2]);
+        sqrMul(r, 10, odd[8]);
+        sqrMul(r, 6, odd[13]);
+        sqrMul(r, 5, odd[6]);
+        sqrMul(r, 8, odd[1]);
+        sqrMul(r, 11, odd[10]);
+        sqrMul(r, 1, odd[0]);
+        sqrMul(r, 9, odd[11]);
+        sqrMul(r, 6, odd[12]);
+        sqrMul(r, 5, odd[7]);
+        sqrMul(r, 10, odd[5]);
+        sqrMul(r, 6, odd[10]);
+        sqrMul(r, 7, odd[8]);
+        sqrMul(r, 5, odd[6]);
+        sqrMul(r, 7, odd[3]);
+        sqrMul(r, 6, odd[3]);
+        sqrMul(r, 7, odd[10]);
+        sqrMul(r, 7, odd[6]);
+        sqrMul(r, 6, odd[7]);
+        sqrMul(r, 5, odd[0]);
+        sqrMul(r, 10, odd[8]);
+        sqrMul(r, 1, odd[0]);
+        sqrMul(r, 9, odd[5]);
+        sqrMul(r, 6, odd[13]);
+        sqrMul(r, 9, odd[15]);
+        sqrMul(r, 7, odd[15]);
+        sqrMul(r, 5, odd[10]);
+        sqrMul(r, 3, odd[0]);
+        mul(r, r, r);
+
+        return r;
+    }
+
+    /**
+     * r = r^(2^n) * m
+     */
+    private static void sqrMul(Fp r, int n, Fp m) {
+        for (int i = 0; i < n; i++) {
+            mul(r, r, r);
+        }
+        mul(r, r, m);
     }
 
     @Override
     public Fp dbl() {
-        return new Fp(v.add(v).mod(P));
+        Fp r = new Fp();
+        add(r, this, this);
+        return r;
     }
 
+    /**
+     * Inversion by Fermat's little theorem: v^(p - 2)
+     */
     @Override
     public Fp inverse() {
-        return new Fp(v.modInverse(P));
+        if (isZero()) {
+            throw new ArithmeticException("Zero is not invertible");
+        }
+
+        Fp r = new Fp();
+        r.set(_1);
+
+        // p - 2 differs from p only in the lowest limb
+        long[] e = { P0 - 2, P1, P2, P3 };
+        for (int i = 253; i >= 0; i--) {
+            mul(r, r, r);
+            if (((e[i >>> 6] >>> (i & 63)) & 1) != 0) {
+                mul(r, r, this);
+            }
+        }
+
+        return r;
+    }
+
+    /**
+     * Inverts all elements with a single field inversion, zero elements are
+     * returned as zeros
+     */
+    public static Fp[] batchInverse(Fp[] els) {
+        return Field.batchInverse(els, new Fp[els.length]);
     }
 
     @Override
     public Fp negate() {
-        return new Fp(v.negate().mod(P));
+        Fp r = new Fp();
+        negate(r, this);
+        return r;
     }
 
     @Override
     public boolean isZero() {
-        return v.compareTo(BigInteger.ZERO) == 0;
+        return (v0 | v1 | v2 | v3) == 0;
     }
 
     /**
@@ -103,7 +264,7 @@ public class Fp implements Field<Fp> {
      */
     @Override
     public boolean isValid() {
-        return v.compareTo(P) < 0;
+        return lessThanP(v0, v1, v2, v3);
     }
 
     Fp2 mul(Fp2 o) {
@@ -111,15 +272,443 @@ public class Fp implements Field<Fp> {
     }
 
     static Fp create(byte[] v) {
-        return new Fp(new BigInteger(1, v));
+        return create(new BigInteger(1, v));
     }
 
+    /**
+     * Unlike {@link #Fp(BigInteger)} this does not reduce its input: values
+     * outside of [0; p) are kept as they are, so {@link #isValid()} reports them
+     */
     static Fp create(BigInteger v) {
-        return new Fp(v);
+        if (v.signum() >= 0 && isCanonical(v)) {
+            return new Fp(v);
+        }
+
+        Fp r = new Fp();
+        if (v.signum() >= 0 && v.bitLength() <= 256) {
+            r.v0 = v.longValue();
+            r.v1 = v.shiftRight(64).longValue();
+            r.v2 = v.shiftRight(128).longValue();
+            r.v3 = v.shiftRight(192).longValue();
+        } else {
+            r.v0 = r.v1 = r.v2 = r.v3 = -1L;
+        }
+        return r;
     }
 
     public byte[] bytes() {
-        return v.toByteArray();
+        return toBigInteger().toByteArray();
+    }
+
+    void set(Fp o) {
+        v0 = o.v0;
+        v1 = o.v1;
+        v2 = o.v2;
+        v3 = o.v3;
+    }
+
+    /**
+     * r = a + b, "r" may be the same object as "a" or "b"
+     */
+    static void add(Fp r, Fp a, Fp b) {
+        long s0 = a.v0 + b.v0;
+        long c = carry(a.v0, s0);
+        long s1 = a.v1 + b.v1;
+        long c1 = carry(a.v1, s1);
+        s1 += c;
+        c = c1 | carry(c, s1);
+        long s2 = a.v2 + b.v2;
+        long c2 = carry(a.v2, s2);
+        s2 += c;
+        c = c2 | carry(c, s2);
+        // both operands are below p < 2^254, so the top limb cannot overflow
+        long s3 = a.v3 + b.v3 + c;
+
+        reduceOnce(r, s0, s1, s2, s3);
+    }
+
+    /**
+     * r = a - b, "r" may be the same object as "a" or "b"
+     */
+    static void sub(Fp r, Fp a, Fp b) {
+        long d0 = a.v0 - b.v0;
+        long w = borrow(a.v0, d0);
+        long d1 = a.v1 - b.v1;
+        long w1 = borrow(a.v1, d1);
+        long t = d1;
+        d1 -= w;
+        w = w1 | borrow(t, d1);
+        long d2 = a.v2 - b.v2;
+        long w2 = borrow(a.v2, d2);
+        t = d2;
+        d2 -= w;
+        w = w2 | borrow(t, d2);
+        long d3 = a.v3 - b.v3;
+        long w3 = borrow(a.v3, d3);
+        t = d3;
+        d3 -= w;
+        w = w3 | borrow(t, d3);
+
+        // add p back if the subtraction wrapped around
+        long mask = -w;
+        long s0 = d0 + (P0 & mask);
+        long c = carry(d0, s0);
+        long s1 = d1 + (P1 & mask);
+        long c1 = carry(d1, s1);
+        s1 += c;
+        c = c1 | carry(c, s1);
+        long s2 = d2 + (P2 & mask);
+        long c2 = carry(d2, s2);
+        s2 += c;
+        c = c2 | carry(c, s2);
+        long s3 = d3 + (P3 & mask) + c;
+
+        r.v0 = s0;
+        r.v1 = s1;
+        r.v2 = s2;
+        r.v3 = s3;
+    }
+
+    /**
+     * r = -a, "r" may be the same object as "a"
+     */
+    static void negate(Fp r, Fp a) {
+        if (a.isZero()) {
+            r.v0 = r.v1 = r.v2 = r.v3 = 0;
+            return;
+        }
+
+        long d0 = P0 - a.v0;
+        long w = borrow(P0, d0);
+        long d1 = P1 - a.v1;
+        long w1 = borrow(P1, d1);
+        long t = d1;
+        d1 -= w;
+        w = w1 | borrow(t, d1);
+        long d2 = P2 - a.v2;
+        long w2 = borrow(P2, d2);
+        t = d2;
+        d2 -= w;
+        w = w2 | borrow(t, d2);
+        long d3 = P3 - a.v3 - w;
+
+        r.v0 = d0;
+        r.v1 = d1;
+        r.v2 = d2;
+        r.v3 = d3;
+    }
+
+    /**
+     * r = a * b, "r" may be the same object as "a" or "b"
+     */
+    static void mul(Fp r, Fp a, Fp b) {
+        mul(r, a.v0, a.v1, a.v2, a.v3, b.v0, b.v1, b.v2, b.v3);
+    }
+
+    /**
+     * Montgomery multiplication, coarsely integrated operand scanning (CIOS). As
+     * the top limb of p is below 2^62 the intermediate result fits in four limbs
+     * and the carry word of the classic algorithm can be dropped
+     */
+    private static void mul(Fp r, long a0, long a1, long a2, long a3, long b0, long b1, long b2, long b3) {
+        long t0, t1 = 0, t2 = 0, t3 = 0;
+        long a, c, m, lo, hi, s;
+
+        // round 0: t += a * b0, then shift out one limb of t + m * P
+        lo = a0 * b0;
+        a = mulHi(a0, b0);
+        t0 = lo;
+        m = t0 * INV;
+        lo = m * P0;
+        c = mulHi(m, P0);
+        s = t0 + lo;
+        c += carry(lo, s);
+        lo = a1 * b0;
+        hi = mulHi(a1, b0);
+        s = lo + a;
+        hi += carry(lo, s);
+        t1 = s;
+        a = hi;
+        lo = m * P1;
+        hi = mulHi(m, P1);
+        s = lo + t1;
+        hi += carry(lo, s);
+        t0 = s + c;
+        hi += carry(s, t0);
+        c = hi;
+        lo = a2 * b0;
+        hi = mulHi(a2, b0);
+        s = lo + a;
+        hi += carry(lo, s);
+        t2 = s;
+        a = hi;
+        lo = m * P2;
+        hi = mulHi(m, P2);
+        s = lo + t2;
+        hi += carry(lo, s);
+        t1 = s + c;
+        hi += carry(s, t1);
+        c = hi;
+        lo = a3 * b0;
+        hi = mulHi(a3, b0);
+        s = lo + a;
+        hi += carry(lo, s);
+        t3 = s;
+        a = hi;
+        lo = m * P3;
+        hi = mulHi(m, P3);
+        s = lo + t3;
+        hi += carry(lo, s);
+        t2 = s + c;
+        hi += carry(s, t2);
+        c = hi;
+        t3 = c + a;
+        
+        // round 1: t += a * b1, then shift out one limb of t + m * P
+        lo = a0 * b1;
+        a = mulHi(a0, b1);
+        t0 += lo;
+        a += carry(lo, t0);
+        m = t0 * INV;
+        lo = m * P0;
+        c = mulHi(m, P0);
+        s = t0 + lo;
+        c += carry(lo, s);
+        lo = a1 * b1;
+        hi = mulHi(a1, b1);
+        s = lo + t1;
+        hi += carry(lo, s);
+        t1 = s + a;
+        hi += carry(s, t1);
+        a = hi;
+        lo = m * P1;
+        hi = mulHi(m, P1);
+        s = lo + t1;
+        hi += carry(lo, s);
+        t0 = s + c;
+        hi += carry(s, t0);
+        c = hi;
+        lo = a2 * b1;
+        hi = mulHi(a2, b1);
+        s = lo + t2;
+        hi += carry(lo, s);
+        t2 = s + a;
+        hi += carry(s, t2);
+        a = hi;
+        lo = m * P2;
+        hi = mulHi(m, P2);
+        s = lo + t2;
+        hi += carry(lo, s);
+        t1 = s + c;
+        hi += carry(s, t1);
+        c = hi;
+        lo = a3 * b1;
+        hi = mulHi(a3, b1);
+        s = lo + t3;
+        hi += carry(lo, s);
+        t3 = s + a;
+        hi += carry(s, t3);
+        a = hi;
+        lo = m * P3;
+        hi = mulHi(m, P3);
+        s = lo + t3;
+        hi += carry(lo, s);
+        t2 = s + c;
+        hi += carry(s, t2);
+        c = hi;
+        t3 = c + a;
+        
+        // round 2: t += a * b2, then shift out one limb of t + m * P
+        lo = a0 * b2;
+        a = mulHi(a0, b2);
+        t0 += lo;
+        a += carry(lo, t0);
+        m = t0 * INV;
+        lo = m * P0;
+        c = mulHi(m, P0);
+        s = t0 + lo;
+        c += carry(lo, s);
+        lo = a1 * b2;
+        hi = mulHi(a1, b2);
+        s = lo + t1;
+        hi += carry(lo, s);
+        t1 = s + a;
+        hi += carry(s, t1);
+        a = hi;
+        lo = m * P1;
+        hi = mulHi(m, P1);
+        s = lo + t1;
+        hi += carry(lo, s);
+        t0 = s + c;
+        hi += carry(s, t0);
+        c = hi;
+        lo = a2 * b2;
+        hi = mulHi(a2, b2);
+        s = lo + t2;
+        hi += carry(lo, s);
+        t2 = s + a;
+        hi += carry(s, t2);
+        a = hi;
+        lo = m * P2;
+        hi = mulHi(m, P2);
+        s = lo + t2;
+        hi += carry(lo, s);
+        t1 = s + c;
+        hi += carry(s, t1);
+        c = hi;
+        lo = a3 * b2;
+        hi = mulHi(a3, b2);
+        s = lo + t3;
+        hi += carry(lo, s);
+        t3 = s + a;
+        hi += carry(s, t3);
+        a = hi;
+        lo = m * P3;
+        hi = mulHi(m, P3);
+        s = lo + t3;
+        hi += carry(lo, s);
+        t2 = s + c;
+        hi += carry(s, t2);
+        c = hi;
+        t3 = c + a;
+        
+        // round 3: t += a * b3, then shift out one limb of t + m * P
+        lo = a0 * b3;
+        a = mulHi(a0, b3);
+        t0 += lo;
+        a += carry(lo, t0);
+        m = t0 * INV;
+        lo = m * P0;
+        c = mulHi(m, P0);
+        s = t0 + lo;
+        c += carry(lo, s);
+        lo = a1 * b3;
+        hi = mulHi(a1, b3);
+        s = lo + t1;
+        hi += carry(lo, s);
+        t1 = s + a;
+        hi += carry(s, t1);
+        a = hi;
+        lo = m * P1;
+        hi = mulHi(m, P1);
+        s = lo + t1;
+        hi += carry(lo, s);
+        t0 = s + c;
+        hi += carry(s, t0);
+        c = hi;
+        lo = a2 * b3;
+        hi = mulHi(a2, b3);
+        s = lo + t2;
+        hi += carry(lo, s);
+        t2 = s + a;
+        hi += carry(s, t2);
+        a = hi;
+        lo = m * P2;
+        hi = mulHi(m, P2);
+        s = lo + t2;
+        hi += carry(lo, s);
+        t1 = s + c;
+        hi += carry(s, t1);
+        c = hi;
+        lo = a3 * b3;
+        hi = mulHi(a3, b3);
+        s = lo + t3;
+        hi += carry(lo, s);
+        t3 = s + a;
+        hi += carry(s, t3);
+        a = hi;
+        lo = m * P3;
+        hi = mulHi(m, P3);
+        s = lo + t3;
+        hi += carry(lo, s);
+        t2 = s + c;
+        hi += carry(s, t2);
+        c = hi;
+        t3 = c + a;
+        
+        reduceOnce(r, t0, t1, t2, t3);
+    }
+
+    /**
+     * Writes "t" into "r", subtracting p once if t >= p
+     */
+    static void reduceOnce(Fp r, long t0, long t1, long t2, long t3) {
+        long d0 = t0 - P0;
+        long w = borrow(t0, d0);
+        long d1 = t1 - P1;
+        long w1 = borrow(t1, d1);
+        long t = d1;
+        d1 -= w;
+        w = w1 | borrow(t, d1);
+        long d2 = t2 - P2;
+        long w2 = borrow(t2, d2);
+        t = d2;
+        d2 -= w;
+        w = w2 | borrow(t, d2);
+        long d3 = t3 - P3;
+        long w3 = borrow(t3, d3);
+        t = d3;
+        d3 -= w;
+        w = w3 | borrow(t, d3);
+
+        if (w == 0) {
+            r.v0 = d0;
+            r.v1 = d1;
+            r.v2 = d2;
+            r.v3 = d3;
+        } else {
+            r.v0 = t0;
+            r.v1 = t1;
+            r.v2 = t2;
+            r.v3 = t3;
+        }
+    }
+
+    private static boolean lessThanP(long t0, long t1, long t2, long t3) {
+        if (t3 != P3) return Long.compareUnsigned(t3, P3) < 0;
+        if (t2 != P2) return Long.compareUnsigned(t2, P2) < 0;
+        if (t1 != P1) return Long.compareUnsigned(t1, P1) < 0;
+        return Long.compareUnsigned(t0, P0) < 0;
+    }
+
+    private static boolean isCanonical(BigInteger v) {
+        if (v.bitLength() > 254) return false;
+
+        long l0 = v.longValue();
+        long l1 = v.shiftRight(64).longValue();
+        long l2 = v.shiftRight(128).longValue();
+        long l3 = v.shiftRight(192).longValue();
+        return lessThanP(l0, l1, l2, l3);
+    }
+
+    /**
+     * High 64 bits of the unsigned 128-bit product x * y
+     */
+    static long mulHi(long x, long y) {
+        return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+
+    /**
+     * Carry out of "sum = x + y", given one of the addends. Computed as the
+     * branch-free unsigned "sum < x" (Hacker's Delight 2-12), carries are random
+     * and a branch here would be mispredicted half of the time
+     */
+    static long carry(long x, long sum) {
+        return ((~sum & x) | (~(sum ^ x) & (sum - x))) >>> 63;
+    }
+
+    /**
+     * Borrow out of "diff = x - y", given the minuend: unsigned "x < diff"
+     */
+    static long borrow(long x, long diff) {
+        return ((~x & diff) | (~(x ^ diff) & (x - diff))) >>> 63;
+    }
+
+    private static void putLong(byte[] bytes, int off, long v) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[off + i] = (byte) v;
+            v >>>= 8;
+        }
     }
 
     @Override
@@ -129,16 +718,16 @@ public class Fp implements Field<Fp> {
 
         Fp fp = (Fp) o;
 
-        return !(v != null ? v.compareTo(fp.v) != 0 : fp.v != null);
+        return v0 == fp.v0 && v1 == fp.v1 && v2 == fp.v2 && v3 == fp.v3;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(v);
+        return Long.hashCode(v0 ^ (v1 * 31) ^ (v2 * 961) ^ (v3 * 29791));
     }
 
     @Override
     public String toString() {
-        return v.toString();
+        return toBigInteger().toString();
     }
 }
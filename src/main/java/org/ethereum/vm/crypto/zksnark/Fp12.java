@@ -18,6 +18,8 @@
 package org.ethereum.vm.crypto.zksnark;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -40,6 +42,9 @@ public class Fp12 implements Field<Fp12> {
     static final Fp12 ZERO = new Fp12(Fp6.ZERO, Fp6.ZERO);
     static final Fp12 _1 = new Fp12(Fp6._1, Fp6.ZERO);
 
+    // width of the NAF used by cyclotomicExpCompressed
+    static final int EXP_WINDOW = 4;
+
     Fp6 a;
     Fp6 b;
 
@@ -50,12 +55,14 @@ public class Fp12 implements Field<Fp12> {
 
     @Override
     public Fp12 squared() {
-        Fp6 ab = a.mul(b);
+        Fp6Wide ab = new Fp6Wide().mul(a, b);
+        Fp6 rb = ab.reduce().dbl();
 
-        Fp6 ra = a.add(b).mul(a.add(b.mulByNonResidue())).sub(ab).sub(ab.mulByNonResidue());
-        Fp6 rb = ab.add(ab);
+        // ra = (a + b)(a + NON_RESIDUE * b) - ab - NON_RESIDUE * ab
+        Fp6Wide ra = new Fp6Wide().mul(a.add(b), a.add(b.mulByNonResidue())).sub(ab);
+        ra.sub(ab.mulByNonResidue());
 
-        return new Fp12(ra, rb);
+        return new Fp12(ra.reduce(), rb);
     }
 
     @Override
@@ -63,6 +70,11 @@ public class Fp12 implements Field<Fp12> {
         return null;
     }
 
+    /**
+     * Multiplication by a sparse element with (a.a, a.c, b.b) = (ell0, ellVV,
+     * ellVW) and zeros elsewhere, each output coefficient is accumulated unreduced
+     * and reduced once
+     */
     Fp12 mulBy024(Fp2 ell0, Fp2 ellVW, Fp2 ellVV) {
         Fp2 z0 = a.a;
         Fp2 z1 = a.b;
@@ -75,64 +87,79 @@ public class Fp12 implements Field<Fp12> {
         Fp2 x2 = ellVV;
         Fp2 x4 = ellVW;
 
-        Fp2 t0, t1, t2, s0, t3, t4, d0, d2, d4, s1;
-
-        d0 = z0.mul(x0);
-        d2 = z2.mul(x2);
-        d4 = z4.mul(x4);
-        t2 = z0.add(z4);
-        t1 = z0.add(z2);
-        s0 = z1.add(z3).add(z5);
-
-        // For z.a_.a_ = z0.
-        s1 = z1.mul(x2);
-        t3 = s1.add(d4);
-        t4 = Fp6.NON_RESIDUE.mul(t3).add(d0);
-        z0 = t4;
-
-        // For z.a_.b_ = z1
-        t3 = z5.mul(x4);
-        s1 = s1.add(t3);
-        t3 = t3.add(d2);
-        t4 = Fp6.NON_RESIDUE.mul(t3);
-        t3 = z1.mul(x0);
-        s1 = s1.add(t3);
-        t4 = t4.add(t3);
-        z1 = t4;
-
-        // For z.a_.c_ = z2
-        t0 = x0.add(x2);
-        t3 = t1.mul(t0).sub(d0).sub(d2);
-        t4 = z3.mul(x4);
-        s1 = s1.add(t4);
-        t3 = t3.add(t4);
-
-        // For z.b_.a_ = z3 (z3 needs z2)
-        t0 = z2.add(z4);
-        z2 = t3;
-        t1 = x2.add(x4);
-        t3 = t0.mul(t1).sub(d2).sub(d4);
-        t4 = Fp6.NON_RESIDUE.mul(t3);
-        t3 = z3.mul(x0);
-        s1 = s1.add(t3);
-        t4 = t4.add(t3);
-        z3 = t4;
-
-        // For z.b_.b_ = z4
-        t3 = z5.mul(x2);
-        s1 = s1.add(t3);
-        t4 = Fp6.NON_RESIDUE.mul(t3);
-        t0 = x0.add(x4);
-        t3 = t2.mul(t0).sub(d0).sub(d4);
-        t4 = t4.add(t3);
-        z4 = t4;
-
-        // For z.b_.c_ = z5.
-        t0 = x0.add(x2).add(x4);
-        t3 = s0.mul(t0).sub(s1);
-        z5 = t3;
-
-        return new Fp12(new Fp6(z0, z1, z2), new Fp6(z3, z4, z5));
+        Fp2Wide d0 = new Fp2Wide().mul(z0, x0);
+        Fp2Wide d2 = new Fp2Wide().mul(z2, x2);
+        Fp2Wide d4 = new Fp2Wide().mul(z4, x4);
+
+        // z.a_.a_ = NON_RESIDUE * (z1 * x2 + z4 * x4) + z0 * x0
+        Fp2Wide r0 = new Fp2Wide().mul(z1, x2).add(d4).mulByNonResidue().add(d0);
+
+        // z.a_.b_ = NON_RESIDUE * (z5 * x4 + z2 * x2) + z1 * x0
+        Fp2Wide r1 = new Fp2Wide().mul(z5, x4).add(d2).mulByNonResidue().mulAdd(z1, x0);
+
+        // z.a_.c_ = z0 * x2 + z2 * x0 + z3 * x4
+        Fp2Wide r2 = new Fp2Wide().mul(z0.add(z2), x0.add(x2)).sub(d0).sub(d2).mulAdd(z3, x4);
+
+        // z.b_.a_ = NON_RESIDUE * (z2 * x4 + z4 * x2) + z3 * x0
+        Fp2Wide r3 = new Fp2Wide().mul(z2.add(z4), x2.add(x4)).sub(d2).sub(d4).mulByNonResidue().mulAdd(z3, x0);
+
+        // z.b_.b_ = NON_RESIDUE * z5 * x2 + z0 * x4 + z4 * x0
+        Fp2Wide r4 = new Fp2Wide().mul(z0.add(z4), x0.add(x4)).sub(d0).sub(d4).mulAdd(z5, x2.mulByNonResidue());
+
+        // z.b_.c_ = z1 * x4 + z3 * x2 + z5 * x0
+        Fp2Wide r5 = new Fp2Wide().mul(z1, x4).mulAdd(z3, x2).mulAdd(z5, x0);
+
+        return new Fp12(
+            new Fp6(r0.reduce(), r1.reduce(), r2.reduce()),
+            new Fp6(r3.reduce(), r4.reduce(), r5.reduce())
+        );
+    }
+
+    /**
+     * Product of two sparse elements of the {@link #mulBy024(Fp2, Fp2, Fp2)}
+     * shape, it takes six F_p2 multiplications and leaves b.c zero. Two lines
+     * multiplied together this way and then by a dense element are cheaper than
+     * two sparse multiplications of the dense element
+     */
+    static Fp12 mulLines(Fp2 x0, Fp2 x4, Fp2 x2, Fp2 y0, Fp2 y4, Fp2 y2) {
+        Fp2Wide d0 = new Fp2Wide().mul(x0, y0);
+        Fp2Wide d2 = new Fp2Wide().mul(x2, y2);
+        Fp2Wide d4 = new Fp2Wide().mul(x4, y4);
+
+        // z.a_.c_ = x0 * y2 + x2 * y0
+        Fp2Wide r2 = new Fp2Wide().mul(x0.add(x2), y0.add(y2)).sub(d0).sub(d2);
+
+        // z.b_.a_ = NON_RESIDUE * (x2 * y4 + x4 * y2)
+        Fp2Wide r3 = new Fp2Wide().mul(x2.add(x4), y2.add(y4)).sub(d2).sub(d4).mulByNonResidue();
+
+        // z.b_.b_ = x0 * y4 + x4 * y0
+        Fp2Wide r4 = new Fp2Wide().mul(x0.add(x4), y0.add(y4)).sub(d0).sub(d4);
+
+        // z.a_.a_ = NON_RESIDUE * x4 * y4 + x0 * y0
+        Fp2Wide r0 = d4.mulByNonResidue().add(d0);
+
+        // z.a_.b_ = NON_RESIDUE * x2 * y2
+        Fp2Wide r1 = d2.mulByNonResidue();
+
+        return new Fp12(new Fp6(r0.reduce(), r1.reduce(), r2.reduce()), new Fp6(r3.reduce(), r4.reduce(), Fp2.ZERO));
+    }
+
+    /**
+     * Multiplication by an element with zero b.c, such as the product of two lines
+     * returned by {@link #mulLines(Fp2, Fp2, Fp2, Fp2, Fp2, Fp2)}, same as
+     * {@link #mul(Fp12)} with one F_p2 product less
+     */
+    Fp12 mulBySparse(Fp12 o) {
+        Fp6 a2 = o.a, b2 = o.b;
+        Fp6 a1 = a, b1 = b;
+
+        Fp6Wide a1a2 = new Fp6Wide().mul(a1, a2);
+        Fp6Wide b1b2 = new Fp6Wide().mulBy01(b1, b2.a, b2.b);
+
+        Fp6Wide rb = new Fp6Wide().mul(a1.add(b1), a2.add(b2)).sub(a1a2).sub(b1b2);
+        Fp6Wide ra = b1b2.mulByNonResidue().add(a1a2);
+
+        return new Fp12(ra.reduce(), rb.reduce());
     }
 
     @Override
@@ -140,18 +167,22 @@ public class Fp12 implements Field<Fp12> {
         return new Fp12(a.add(o.a), b.add(o.b));
     }
 
+    /**
+     * Karatsuba multiplication on unreduced F_p6 products, each of twelve F_p
+     * coefficients is reduced once
+     */
     @Override
     public Fp12 mul(Fp12 o) {
         Fp6 a2 = o.a, b2 = o.b;
         Fp6 a1 = a, b1 = b;
 
-        Fp6 a1a2 = a1.mul(a2);
-        Fp6 b1b2 = b1.mul(b2);
+        Fp6Wide a1a2 = new Fp6Wide().mul(a1, a2);
+        Fp6Wide b1b2 = new Fp6Wide().mul(b1, b2);
 
-        Fp6 ra = a1a2.add(b1b2.mulByNonResidue());
-        Fp6 rb = a1.add(b1).mul(a2.add(b2)).sub(a1a2).sub(b1b2);
+        Fp6Wide rb = new Fp6Wide().mul(a1.add(b1), a2.add(b2)).sub(a1a2).sub(b1b2);
+        Fp6Wide ra = b1b2.mulByNonResidue().add(a1a2);
 
-        return new Fp12(ra, rb);
+        return new Fp12(ra.reduce(), rb.reduce());
     }
 
     @Override
@@ -206,15 +237,15 @@ public class Fp12 implements Field<Fp12> {
 
         // t0 + t1*y = (z0 + z1*y)^2 = a^2
         tmp = z0.mul(z1);
-        t0 = z0.add(z1).mul(z0.add(Fp6.NON_RESIDUE.mul(z1))).sub(tmp).sub(Fp6.NON_RESIDUE.mul(tmp));
+        t0 = z0.add(z1).mul(z0.add(z1.mulByNonResidue())).sub(tmp).sub(tmp.mulByNonResidue());
         t1 = tmp.add(tmp);
         // t2 + t3*y = (z2 + z3*y)^2 = b^2
         tmp = z2.mul(z3);
-        t2 = z2.add(z3).mul(z2.add(Fp6.NON_RESIDUE.mul(z3))).sub(tmp).sub(Fp6.NON_RESIDUE.mul(tmp));
+        t2 = z2.add(z3).mul(z2.add(z3.mulByNonResidue())).sub(tmp).sub(tmp.mulByNonResidue());
         t3 = tmp.add(tmp);
         // t4 + t5*y = (z4 + z5*y)^2 = c^2
         tmp = z4.mul(z5);
-        t4 = z4.add(z5).mul(z4.add(Fp6.NON_RESIDUE.mul(z5))).sub(tmp).sub(Fp6.NON_RESIDUE.mul(tmp));
+        t4 = z4.add(z5).mul(z4.add(z5.mulByNonResidue())).sub(tmp).sub(tmp.mulByNonResidue());
         t5 = tmp.add(tmp);
 
         // for A
@@ -231,7 +262,7 @@ public class Fp12 implements Field<Fp12> {
         // for B
 
         // z2 = 3 * (xi * t5) + 2 * z2
-        tmp = Fp6.NON_RESIDUE.mul(t5);
+        tmp = t5.mulByNonResidue();
         z2 = tmp.add(z2);
         z2 = z2.add(z2);
         z2 = z2.add(tmp);
@@ -270,7 +301,157 @@ public class Fp12 implements Field<Fp12> {
         return res;
     }
 
-    Fp12 unitaryInverse() {
+    /**
+     * Karabina's compressed squaring in the cyclotomic subgroup, see <a href=
+     * "https://eprint.iacr.org/2010/542.pdf">Squaring in cyclotomic subgroups</a>
+     * <br/>
+     *
+     * With g0 = a.a, g1 = a.b, g2 = a.c, g3 = b.a, g4 = b.b, g5 = b.c only g1,
+     * g2, g3 and g5 are used and computed, g0 and g4 of the result are zero and
+     * have to be restored by {@link #decompress(Fp12[])} <br/>
+     *
+     * Costs six F_p2 squarings against nine of {@link #cyclotomicSquared()}
+     */
+    Fp12 cyclotomicSquaredCompressed() {
+        Fp2 g1 = a.b;
+        Fp2 g2 = a.c;
+        Fp2 g3 = b.a;
+        Fp2 g5 = b.c;
+
+        Fp2 t0 = g1.squared();
+        Fp2 t1 = g5.squared();
+        Fp2 t2 = g2.squared();
+        Fp2 t3 = g3.squared();
+
+        // t4 = 2 * xi * g1 * g5, 2 * g1 * g5 = (g1 + g5)^2 - g1^2 - g5^2
+        Fp2 t4 = g1.add(g5).squared().sub(t0).sub(t1).mulByNonResidue();
+        // t5 = 2 * g3 * g2 = (g3 + g2)^2 - g3^2 - g2^2
+        Fp2 t5 = g3.add(g2).squared().sub(t3).sub(t2);
+
+        Fp2 tmp;
+
+        // z1 = 3 * (g3^2 + xi * g2^2) - 2 * g1
+        tmp = t3.add(t2.mulByNonResidue());
+        Fp2 z1 = tmp.sub(g1).dbl().add(tmp);
+        // z2 = 3 * (xi * g5^2 + g1^2) - 2 * g2
+        tmp = t1.mulByNonResidue().add(t0);
+        Fp2 z2 = tmp.sub(g2).dbl().add(tmp);
+        // z3 = 6 * xi * g1 * g5 + 2 * g3
+        Fp2 z3 = t4.add(g3).dbl().add(t4);
+        // z5 = 6 * g3 * g2 + 2 * g5
+        Fp2 z5 = t5.add(g5).dbl().add(t5);
+
+        return new Fp12(new Fp6(Fp2.ZERO, z1, z2), new Fp6(z3, Fp2.ZERO, z5));
+    }
+
+    /**
+     * Restores g0 and g4 of elements produced by
+     * {@link #cyclotomicSquaredCompressed()}, sharing a single inversion
+     * between all of them <br/>
+     *
+     * g4 = (xi * g5^2 + 3 * g1^2 - 2 * g2) / (4 * g3), or 2 * g1 * g5 / g2 if g3 is
+     * zero <br/>
+     * g0 = xi * (2 * g4^2 + g3 * g5 - 3 * g1 * g2) + 1
+     */
+    static Fp12[] decompress(Fp12[] els) {
+        Fp2[] num = new Fp2[els.length];
+        Fp2[] den = new Fp2[els.length];
+
+        for (int i = 0; i < els.length; i++) {
+            Fp2 g1 = els[i].a.b;
+            Fp2 g2 = els[i].a.c;
+            Fp2 g3 = els[i].b.a;
+            Fp2 g5 = els[i].b.c;
+
+            if (g3.isZero()) {
+                num[i] = g1.mul(g5).dbl();
+                den[i] = g2;
+            } else {
+                Fp2 t0 = g1.squared();
+                num[i] = t0.sub(g2).dbl().add(t0).add(g5.squared().mulByNonResidue());
+                den[i] = g3.dbl().dbl();
+            }
+        }
+
+        // zero denominators are passed through, which yields g4 = 0 for the unity
+        Fp2[] inv = Fp2.batchInverse(den);
+
+        Fp12[] res = new Fp12[els.length];
+        for (int i = 0; i < els.length; i++) {
+            Fp2 g1 = els[i].a.b;
+            Fp2 g2 = els[i].a.c;
+            Fp2 g3 = els[i].b.a;
+            Fp2 g5 = els[i].b.c;
+
+            Fp2 g4 = num[i].mul(inv[i]);
+            Fp2 t1 = g1.mul(g2);
+            Fp2 g0 = g4.squared().sub(t1).dbl().sub(t1).add(g3.mul(g5)).mulByNonResidue().add(Fp2._1);
+
+            res[i] = new Fp12(new Fp6(g0, g1, g2), new Fp6(g3, g4, g5));
+        }
+
+        return res;
+    }
+
+    /**
+     * Same as {@link #cyclotomicExp(BigInteger)}, but runs right-to-left over the
+     * width-{@value #EXP_WINDOW} NAF of "pow" with compressed squarings <br/>
+     *
+     * Powers x^(2^i) at non-zero digits d_i are collected while squaring and
+     * decompressed at once, then multiplied into z_d = prod x^(2^i) over the
+     * digits of magnitude "d", negative digits with {@link #unitaryInverse()}.
+     * The result prod z_d^d is taken without exponentiation: with B the running
+     * product of z_d from the largest "d" down and A the product of all B,
+     * A = prod z_d^((d + 1) / 2), B = prod z_d and x^pow = A^2 * B^-1 <br/>
+     *
+     * For {@link Params#PAIRING_FINAL_EXPONENT_Z} that is 62 compressed
+     * squarings, 13 decompressed powers and 17 multiplications, against 63
+     * squarings and 28 multiplications of square-and-multiply
+     */
+    Fp12 cyclotomicExpCompressed(BigInteger pow) {
+        int[] naf = WNaf.encode(pow, EXP_WINDOW);
+        int top = naf.length - 1;
+        while (top > 0 && naf[top] == 0) top--;
+
+        // x^(2^i) for every non-zero digit but the lowest one, in compressed form
+        List<Fp12> compressed = new ArrayList<>();
+        Fp12 c = this;
+        for (int i = 1; i <= top; i++) {
+            c = c.cyclotomicSquaredCompressed();
+            if (naf[i] != 0) compressed.add(c);
+        }
+
+        Fp12[] powers = decompress(compressed.toArray(new Fp12[0]));
+
+        // z[k] is z_d for d = 2k + 1
+        Fp12[] z = new Fp12[1 << (EXP_WINDOW - 2)];
+        for (int i = 0, j = 0; i <= top; i++) {
+            if (naf[i] == 0) continue;
+
+            Fp12 el = i == 0 ? this : powers[j++];
+            if (naf[i] < 0) el = el.unitaryInverse();
+
+            int k = Math.abs(naf[i]) >> 1;
+            z[k] = z[k] == null ? el : z[k].mul(el);
+        }
+
+        Fp12 acc = null, run = null;
+        for (int k = z.length - 1; k >= 0; k--) {
+            if (z[k] != null) run = run == null ? z[k] : run.mul(z[k]);
+            if (run != null) acc = acc == null ? run : acc.mul(run);
+        }
+
+        if (acc == null) return _1; // pow = 0
+        if (acc == run) return run; // only digits of magnitude 1
+
+        return acc.cyclotomicSquared().mul(run.unitaryInverse());
+    }
+
+    /**
+     * Inverse of an element of norm one, pairing values included, it is the
+     * conjugate a - b * w
+     */
+    public Fp12 unitaryInverse() {
         Fp6 ra = a;
         Fp6 rb = b.negate();
 
@@ -278,7 +459,7 @@ public class Fp12 implements Field<Fp12> {
     }
 
     Fp12 negExp(BigInteger exp) {
-        return this.cyclotomicExp(exp).unitaryInverse();
+        return this.cyclotomicExpCompressed(exp).unitaryInverse();
     }
 
     @Override
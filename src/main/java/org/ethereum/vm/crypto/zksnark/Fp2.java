@@ -61,25 +61,21 @@ public class Fp2 implements Field<Fp2> {
 
     @Override
     public Fp2 squared() {
-        // using Complex squaring
+        // using Complex squaring, NON_RESIDUE of F_p is -1
 
-        Fp ab = a.mul(b);
-
-        Fp ra = a.add(b).mul(b.mul(Fp.NON_RESIDUE).add(a)).sub(ab).sub(ab.mul(Fp.NON_RESIDUE)); // ra = (a + b)(a + NON_RESIDUE * b) - ab - NON_RESIDUE * b
-        Fp rb = ab.dbl();
+        Fp ra = a.add(b).mul(a.sub(b)); // ra = (a + b)(a - b)
+        Fp rb = a.mul(b).dbl(); // rb = 2ab
 
         return new Fp2(ra, rb);
     }
 
+    /**
+     * Karatsuba multiplication on unreduced products, each coefficient is reduced
+     * once, see {@link Fp2Wide#mul(Fp2, Fp2)}
+     */
     @Override
     public Fp2 mul(Fp2 o) {
-        Fp aa = a.mul(o.a);
-        Fp bb = b.mul(o.b);
-
-        Fp ra = bb.mul(Fp.NON_RESIDUE).add(aa); // ra = a1 * a2 + NON_RESIDUE * b1 * b2
-        Fp rb = a.add(b).mul(o.a.add(o.b)).sub(aa).sub(bb); // rb = (a1 + b1)(a2 + b2) - a1 * a2 - b1 * b2
-
-        return new Fp2(ra, rb);
+        return new Fp2Wide().mul(this, o).reduce();
     }
 
     @Override
@@ -110,6 +106,14 @@ public class Fp2 implements Field<Fp2> {
         return new Fp2(ra, rb);
     }
 
+    /**
+     * Inverts all elements with a single field inversion, zero elements are
+     * returned as zeros
+     */
+    public static Fp2[] batchInverse(Fp2[] els) {
+        return Field.batchInverse(els, new Fp2[els.length]);
+    }
+
     @Override
     public Fp2 negate() {
         return new Fp2(a.negate(), b.negate());
@@ -162,8 +166,26 @@ public class Fp2 implements Field<Fp2> {
         return new Fp2(ra, rb);
     }
 
+    /**
+     * Multiplies by NON_RESIDUE = 9 + i: (a, b) -> (9a - b, a + 9b), with
+     * additions only
+     */
     Fp2 mulByNonResidue() {
-        return NON_RESIDUE.mul(this);
+        Fp ra = new Fp();
+        Fp.add(ra, a, a);
+        Fp.add(ra, ra, ra);
+        Fp.add(ra, ra, ra);
+        Fp.add(ra, ra, a);
+        Fp.sub(ra, ra, b); // ra = 9a - b
+
+        Fp rb = new Fp();
+        Fp.add(rb, b, b);
+        Fp.add(rb, rb, rb);
+        Fp.add(rb, rb, rb);
+        Fp.add(rb, rb, b);
+        Fp.add(rb, rb, a); // rb = a + 9b
+
+        return new Fp2(ra, rb);
     }
 
     @Override
@@ -0,0 +1,103 @@
+package org.ethereum.vm.crypto.zksnark;
+
+/**
+ * Unreduced {@link Fp2} element built of two {@link FpWide} coefficients, lets
+ * the tower accumulate several F_p2 products and reduce them once <br/>
+ *
+ * Operations update this element in place and return it, so expressions can be
+ * chained the same way as with {@link Fp2}
+ */
+final class Fp2Wide {
+    final FpWide a = new FpWide();
+    final FpWide b = new FpWide();
+
+    // scratch
+    private final FpWide t = new FpWide();
+
+    /**
+     * this = x * y, Karatsuba: three products instead of four
+     */
+    Fp2Wide mul(Fp2 x, Fp2 y) {
+        FpWide.mul(a, x.a, y.a);
+        FpWide.mul(t, x.b, y.b);
+        FpWide.mulSums(b, x.a, x.b, y.a, y.b);
+
+        FpWide.sub(b, b, a);
+        FpWide.sub(b, b, t); // b = (x.a + x.b)(y.a + y.b) - x.a * y.a - x.b * y.b
+        FpWide.sub(a, a, t); // a = x.a * y.a - x.b * y.b, as i^2 = -1
+
+        return this;
+    }
+
+    /**
+     * this = this + x * y
+     */
+    Fp2Wide mulAdd(Fp2 x, Fp2 y) {
+        FpWide.mulAdd(a, x.a, y.a);
+        FpWide.mulSub(a, x.b, y.b);
+        FpWide.mulAdd(b, x.a, y.b);
+        FpWide.mulAdd(b, x.b, y.a);
+
+        return this;
+    }
+
+    Fp2Wide add(Fp2Wide o) {
+        FpWide.add(a, a, o.a);
+        FpWide.add(b, b, o.b);
+
+        return this;
+    }
+
+    Fp2Wide sub(Fp2Wide o) {
+        FpWide.sub(a, a, o.a);
+        FpWide.sub(b, b, o.b);
+
+        return this;
+    }
+
+    Fp2Wide dbl() {
+        FpWide.add(a, a, a);
+        FpWide.add(b, b, b);
+
+        return this;
+    }
+
+    Fp2Wide set(Fp2Wide o) {
+        a.set(o.a);
+        b.set(o.b);
+
+        return this;
+    }
+
+    /**
+     * Multiplies by {@link Fp2#NON_RESIDUE} = 9 + i: (a, b) -> (9a - b, a + 9b),
+     * with additions only
+     */
+    Fp2Wide mulByNonResidue() {
+        FpWide.add(t, a, b); // t = a + b
+        FpWide.sub(a, a, b); // a = a - b
+
+        // b = 8b + (a + b)
+        FpWide.add(b, b, b);
+        FpWide.add(b, b, b);
+        FpWide.add(b, b, b);
+        FpWide.add(b, b, t);
+
+        // a = 4 * ((a + b) + (a - b)) + (a - b) = 9a - b
+        FpWide.add(t, t, a);
+        FpWide.add(t, t, t);
+        FpWide.add(t, t, t);
+        FpWide.add(a, a, t);
+
+        return this;
+    }
+
+    Fp2 reduce() {
+        Fp ra = new Fp();
+        Fp rb = new Fp();
+        FpWide.reduce(ra, a);
+        FpWide.reduce(rb, b);
+
+        return new Fp2(ra, rb);
+    }
+}
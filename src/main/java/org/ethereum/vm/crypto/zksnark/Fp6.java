@@ -53,19 +53,7 @@ public class Fp6 implements Field<Fp6> {
 
     @Override
     public Fp6 squared() {
-        Fp2 s0 = a.squared();
-        Fp2 ab = a.mul(b);
-        Fp2 s1 = ab.dbl();
-        Fp2 s2 = a.sub(b).add(c).squared();
-        Fp2 bc = b.mul(c);
-        Fp2 s3 = bc.dbl();
-        Fp2 s4 = c.squared();
-
-        Fp2 ra = s0.add(s3.mulByNonResidue());
-        Fp2 rb = s1.add(s4.mulByNonResidue());
-        Fp2 rc = s1.add(s2).add(s3).sub(s0).sub(s4);
-
-        return new Fp6(ra, rb, rc);
+        return new Fp6Wide().squared(this).reduce();
     }
 
     @Override
@@ -73,20 +61,13 @@ public class Fp6 implements Field<Fp6> {
         return this.add(this);
     }
 
+    /**
+     * Karatsuba multiplication on unreduced F_p2 products, see
+     * {@link Fp6Wide#mul(Fp6, Fp6)}
+     */
     @Override
     public Fp6 mul(Fp6 o) {
-        Fp2 a1 = a, b1 = b, c1 = c;
-        Fp2 a2 = o.a, b2 = o.b, c2 = o.c;
-
-        Fp2 a1a2 = a1.mul(a2);
-        Fp2 b1b2 = b1.mul(b2);
-        Fp2 c1c2 = c1.mul(c2);
-
-        Fp2 ra = a1a2.add(b1.add(c1).mul(b2.add(c2)).sub(b1b2).sub(c1c2).mulByNonResidue());
-        Fp2 rb = a1.add(b1).mul(a2.add(b2)).sub(a1a2).sub(b1b2).add(c1c2.mulByNonResidue());
-        Fp2 rc = a1.add(c1).mul(a2.add(c2)).sub(a1a2).add(b1b2).sub(c1c2);
-
-        return new Fp6(ra, rb, rc);
+        return new Fp6Wide().mul(this, o).reduce();
     }
 
     Fp6 mul(Fp2 o) {
@@ -98,7 +79,7 @@ public class Fp6 implements Field<Fp6> {
     }
 
     Fp6 mulByNonResidue() {
-        Fp2 ra = NON_RESIDUE.mul(c);
+        Fp2 ra = c.mulByNonResidue();
         Fp2 rb = a;
         Fp2 rc = b;
 
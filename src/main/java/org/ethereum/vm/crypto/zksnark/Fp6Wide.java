@@ -0,0 +1,107 @@
+package org.ethereum.vm.crypto.zksnark;
+
+/**
+ * Unreduced {@link Fp6} element built of three {@link Fp2Wide} coefficients,
+ * lets {@link Fp12} reduce each of its twelve F_p coefficients only once <br/>
+ *
+ * Operations update this element in place and return it
+ */
+final class Fp6Wide {
+    Fp2Wide a = new Fp2Wide();
+    Fp2Wide b = new Fp2Wide();
+    Fp2Wide c = new Fp2Wide();
+
+    // scratch
+    private final Fp2Wide d0 = new Fp2Wide();
+    private final Fp2Wide d1 = new Fp2Wide();
+    private final Fp2Wide d2 = new Fp2Wide();
+
+    /**
+     * this = x * y, same Karatsuba formulas as {@link Fp6#mul(Fp6)}
+     */
+    Fp6Wide mul(Fp6 x, Fp6 y) {
+        Fp2Wide a1a2 = d0.mul(x.a, y.a);
+        Fp2Wide b1b2 = d1.mul(x.b, y.b);
+        Fp2Wide c1c2 = d2.mul(x.c, y.c);
+
+        // a = a1a2 + NON_RESIDUE * ((b1 + c1)(b2 + c2) - b1b2 - c1c2)
+        a.mul(x.b.add(x.c), y.b.add(y.c)).sub(b1b2).sub(c1c2).mulByNonResidue().add(a1a2);
+        // c = (a1 + c1)(a2 + c2) - a1a2 + b1b2 - c1c2
+        c.mul(x.a.add(x.c), y.a.add(y.c)).sub(a1a2).add(b1b2).sub(c1c2);
+        // b = (a1 + b1)(a2 + b2) - a1a2 - b1b2 + NON_RESIDUE * c1c2
+        b.mul(x.a.add(x.b), y.a.add(y.b)).sub(a1a2).sub(b1b2).add(c1c2.mulByNonResidue());
+
+        return this;
+    }
+
+    /**
+     * this = x * (y0 + y1 * v), the formulas of {@link #mul(Fp6, Fp6)} with a zero
+     * "c" coefficient take five F_p2 products instead of six
+     */
+    Fp6Wide mulBy01(Fp6 x, Fp2 y0, Fp2 y1) {
+        Fp2Wide a1a2 = d0.mul(x.a, y0);
+        Fp2Wide b1b2 = d1.mul(x.b, y1);
+
+        // a = a1a2 + NON_RESIDUE * c1 * b2
+        a.mul(x.c, y1).mulByNonResidue().add(a1a2);
+        // c = c1 * a2 + b1b2
+        c.mul(x.c, y0).add(b1b2);
+        // b = (a1 + b1)(a2 + b2) - a1a2 - b1b2
+        b.mul(x.a.add(x.b), y0.add(y1)).sub(a1a2).sub(b1b2);
+
+        return this;
+    }
+
+    /**
+     * this = x^2, same formulas as {@link Fp6#squared()}
+     */
+    Fp6Wide squared(Fp6 x) {
+        Fp2Wide s0 = d0.mul(x.a, x.a);
+        Fp2Wide s1 = b.mul(x.a, x.b).dbl();
+        Fp2Wide s3 = d1.mul(x.b, x.c).dbl();
+        Fp2Wide s4 = d2.mul(x.c, x.c);
+
+        Fp2 abc = x.a.sub(x.b).add(x.c);
+
+        // c = s1 + s2 + s3 - s0 - s4
+        c.mul(abc, abc).add(s1).add(s3).sub(s0).sub(s4);
+        // a = s0 + NON_RESIDUE * s3
+        a.set(s3).mulByNonResidue().add(s0);
+        // b = s1 + NON_RESIDUE * s4
+        b.add(s4.mulByNonResidue());
+
+        return this;
+    }
+
+    Fp6Wide add(Fp6Wide o) {
+        a.add(o.a);
+        b.add(o.b);
+        c.add(o.c);
+
+        return this;
+    }
+
+    Fp6Wide sub(Fp6Wide o) {
+        a.sub(o.a);
+        b.sub(o.b);
+        c.sub(o.c);
+
+        return this;
+    }
+
+    /**
+     * Same as {@link Fp6#mulByNonResidue()}: (a, b, c) -> (NON_RESIDUE * c, a, b)
+     */
+    Fp6Wide mulByNonResidue() {
+        Fp2Wide t = c;
+        c = b;
+        b = a;
+        a = t.mulByNonResidue();
+
+        return this;
+    }
+
+    Fp6 reduce() {
+        return new Fp6(a.reduce(), b.reduce(), c.reduce());
+    }
+}
@@ -0,0 +1,538 @@
+package org.ethereum.vm.crypto.zksnark;
+
+import static org.ethereum.vm.crypto.zksnark.Fp.P0;
+import static org.ethereum.vm.crypto.zksnark.Fp.P1;
+import static org.ethereum.vm.crypto.zksnark.Fp.P2;
+import static org.ethereum.vm.crypto.zksnark.Fp.P3;
+import static org.ethereum.vm.crypto.zksnark.Fp.INV;
+import static org.ethereum.vm.crypto.zksnark.Fp.borrow;
+import static org.ethereum.vm.crypto.zksnark.Fp.carry;
+import static org.ethereum.vm.crypto.zksnark.Fp.mulHi;
+
+/**
+ * Unreduced double-width (512-bit) product of two {@link Fp} elements, used to
+ * accumulate sums of products in the extension fields and run a single
+ * Montgomery reduction per output coefficient <br/>
+ * <br/>
+ *
+ * Values are kept in [0; p * 2^256), adding or subtracting p * 2^256 only
+ * touches the upper half and doesn't change the value modulo p. Anything below
+ * p * 2^256 reduces to [0; 2p), hence {@link #reduce(Fp, FpWide)} needs a
+ * single conditional subtraction <br/>
+ *
+ * Like {@link Fp} kernels, all operations write into their first argument which
+ * may alias any of the operands
+ */
+final class FpWide {
+    long w0, w1, w2, w3, w4, w5, w6, w7;
+
+    /**
+     * r = a * b
+     */
+    static void mul(FpWide r, Fp a, Fp b) {
+        mul(r, a.v0, a.v1, a.v2, a.v3, b.v0, b.v1, b.v2, b.v3, 0);
+    }
+
+    /**
+     * r = r + a * b
+     */
+    static void mulAdd(FpWide r, Fp a, Fp b) {
+        mul(r, a.v0, a.v1, a.v2, a.v3, b.v0, b.v1, b.v2, b.v3, 1);
+    }
+
+    /**
+     * r = r - a * b
+     */
+    static void mulSub(FpWide r, Fp a, Fp b) {
+        mul(r, a.v0, a.v1, a.v2, a.v3, b.v0, b.v1, b.v2, b.v3, -1);
+    }
+
+    /**
+     * r = (a0 + a1) * (b0 + b1), sums are left unreduced: they are below 2p and
+     * their product stays below 4p^2 < p * 2^256
+     */
+    static void mulSums(FpWide r, Fp a0, Fp a1, Fp b0, Fp b1) {
+        long x0 = a0.v0 + a1.v0;
+        long c = carry(a0.v0, x0);
+        long x1 = a0.v1 + a1.v1;
+        long c1 = carry(a0.v1, x1);
+        x1 += c;
+        c = c1 | carry(c, x1);
+        long x2 = a0.v2 + a1.v2;
+        long c2 = carry(a0.v2, x2);
+        x2 += c;
+        c = c2 | carry(c, x2);
+        long x3 = a0.v3 + a1.v3 + c;
+
+        long y0 = b0.v0 + b1.v0;
+        c = carry(b0.v0, y0);
+        long y1 = b0.v1 + b1.v1;
+        c1 = carry(b0.v1, y1);
+        y1 += c;
+        c = c1 | carry(c, y1);
+        long y2 = b0.v2 + b1.v2;
+        c2 = carry(b0.v2, y2);
+        y2 += c;
+        c = c2 | carry(c, y2);
+        long y3 = b0.v3 + b1.v3 + c;
+
+        mul(r, x0, x1, x2, x3, y0, y1, y2, y3, 0);
+    }
+
+    /**
+     * r = a + b
+     */
+    static void add(FpWide r, FpWide a, FpWide b) {
+        r.set(a);
+        add(r, b.w0, b.w1, b.w2, b.w3, b.w4, b.w5, b.w6, b.w7);
+    }
+
+    /**
+     * r = a - b
+     */
+    static void sub(FpWide r, FpWide a, FpWide b) {
+        r.set(a);
+        sub(r, b.w0, b.w1, b.w2, b.w3, b.w4, b.w5, b.w6, b.w7);
+    }
+
+    /**
+     * Montgomery reduction: r = t / 2^256 mod p
+     */
+    static void reduce(Fp r, FpWide t) {
+        long t0 = t.w0, t1 = t.w1, t2 = t.w2, t3 = t.w3, t4 = t.w4, t5 = t.w5, t6 = t.w6, t7 = t.w7;
+        long m, lo, hi, s, c, k = 0;
+
+        // round 0: add m * p * 2^(64 * 0) so that limb 0 becomes zero
+        m = t0 * INV;
+        lo = m * P0;
+        hi = mulHi(m, P0);
+        s = lo + t0;
+        hi += carry(lo, s);
+        // the low limb is zero by construction of m
+        c = hi;
+        lo = m * P1;
+        hi = mulHi(m, P1);
+        s = lo + t1;
+        hi += carry(lo, s);
+        t1 = s + c;
+        hi += carry(s, t1);
+        c = hi;
+        lo = m * P2;
+        hi = mulHi(m, P2);
+        s = lo + t2;
+        hi += carry(lo, s);
+        t2 = s + c;
+        hi += carry(s, t2);
+        c = hi;
+        lo = m * P3;
+        hi = mulHi(m, P3);
+        s = lo + t3;
+        hi += carry(lo, s);
+        t3 = s + c;
+        hi += carry(s, t3);
+        c = hi;
+        s = t4 + c;
+        c = carry(c, s);
+        t4 = s + k;
+        k = c | carry(s, t4);
+
+        // round 1: add m * p * 2^(64 * 1) so that limb 1 becomes zero
+        m = t1 * INV;
+        lo = m * P0;
+        hi = mulHi(m, P0);
+        s = lo + t1;
+        hi += carry(lo, s);
+        // the low limb is zero by construction of m
+        c = hi;
+        lo = m * P1;
+        hi = mulHi(m, P1);
+        s = lo + t2;
+        hi += carry(lo, s);
+        t2 = s + c;
+        hi += carry(s, t2);
+        c = hi;
+        lo = m * P2;
+        hi = mulHi(m, P2);
+        s = lo + t3;
+        hi += carry(lo, s);
+        t3 = s + c;
+        hi += carry(s, t3);
+        c = hi;
+        lo = m * P3;
+        hi = mulHi(m, P3);
+        s = lo + t4;
+        hi += carry(lo, s);
+        t4 = s + c;
+        hi += carry(s, t4);
+        c = hi;
+        s = t5 + c;
+        c = carry(c, s);
+        t5 = s + k;
+        k = c | carry(s, t5);
+
+        // round 2: add m * p * 2^(64 * 2) so that limb 2 becomes zero
+        m = t2 * INV;
+        lo = m * P0;
+        hi = mulHi(m, P0);
+        s = lo + t2;
+        hi += carry(lo, s);
+        // the low limb is zero by construction of m
+        c = hi;
+        lo = m * P1;
+        hi = mulHi(m, P1);
+        s = lo + t3;
+        hi += carry(lo, s);
+        t3 = s + c;
+        hi += carry(s, t3);
+        c = hi;
+        lo = m * P2;
+        hi = mulHi(m, P2);
+        s = lo + t4;
+        hi += carry(lo, s);
+        t4 = s + c;
+        hi += carry(s, t4);
+        c = hi;
+        lo = m * P3;
+        hi = mulHi(m, P3);
+        s = lo + t5;
+        hi += carry(lo, s);
+        t5 = s + c;
+        hi += carry(s, t5);
+        c = hi;
+        s = t6 + c;
+        c = carry(c, s);
+        t6 = s + k;
+        k = c | carry(s, t6);
+
+        // round 3: add m * p * 2^(64 * 3) so that limb 3 becomes zero
+        m = t3 * INV;
+        lo = m * P0;
+        hi = mulHi(m, P0);
+        s = lo + t3;
+        hi += carry(lo, s);
+        // the low limb is zero by construction of m
+        c = hi;
+        lo = m * P1;
+        hi = mulHi(m, P1);
+        s = lo + t4;
+        hi += carry(lo, s);
+        t4 = s + c;
+        hi += carry(s, t4);
+        c = hi;
+        lo = m * P2;
+        hi = mulHi(m, P2);
+        s = lo + t5;
+        hi += carry(lo, s);
+        t5 = s + c;
+        hi += carry(s, t5);
+        c = hi;
+        lo = m * P3;
+        hi = mulHi(m, P3);
+        s = lo + t6;
+        hi += carry(lo, s);
+        t6 = s + c;
+        hi += carry(s, t6);
+        c = hi;
+        s = t7 + c;
+        c = carry(c, s);
+        t7 = s + k;
+        k = c | carry(s, t7);
+
+        // t < p * 2^256 so the quotient is below 2p and "k" is zero here
+        Fp.reduceOnce(r, t4, t5, t6, t7);
+    }
+
+    void set(FpWide o) {
+        w0 = o.w0;
+        w1 = o.w1;
+        w2 = o.w2;
+        w3 = o.w3;
+        w4 = o.w4;
+        w5 = o.w5;
+        w6 = o.w6;
+        w7 = o.w7;
+    }
+
+    /**
+     * Schoolbook 4 x 4 limb product, stored into "r", added to or subtracted from
+     * it depending on the sign of "mode"
+     */
+    private static void mul(
+        FpWide r,
+        long a0,
+        long a1,
+        long a2,
+        long a3,
+        long b0,
+        long b1,
+        long b2,
+        long b3,
+        int mode
+    ) {
+        long p0, p1, p2, p3, p4, p5, p6, p7;
+        long lo, hi, s, c;
+
+        // row 0: p[0..4] += a * b0
+        lo = a0 * b0;
+        hi = mulHi(a0, b0);
+        p0 = lo;
+        c = hi;
+        lo = a1 * b0;
+        hi = mulHi(a1, b0);
+        p1 = lo + c;
+        hi += carry(lo, p1);
+        c = hi;
+        lo = a2 * b0;
+        hi = mulHi(a2, b0);
+        p2 = lo + c;
+        hi += carry(lo, p2);
+        c = hi;
+        lo = a3 * b0;
+        hi = mulHi(a3, b0);
+        p3 = lo + c;
+        hi += carry(lo, p3);
+        c = hi;
+        p4 = c;
+
+        // row 1: p[1..5] += a * b1
+        lo = a0 * b1;
+        hi = mulHi(a0, b1);
+        s = lo + p1;
+        hi += carry(lo, s);
+        p1 = s;
+        c = hi;
+        lo = a1 * b1;
+        hi = mulHi(a1, b1);
+        s = lo + p2;
+        hi += carry(lo, s);
+        p2 = s + c;
+        hi += carry(s, p2);
+        c = hi;
+        lo = a2 * b1;
+        hi = mulHi(a2, b1);
+        s = lo + p3;
+        hi += carry(lo, s);
+        p3 = s + c;
+        hi += carry(s, p3);
+        c = hi;
+        lo = a3 * b1;
+        hi = mulHi(a3, b1);
+        s = lo + p4;
+        hi += carry(lo, s);
+        p4 = s + c;
+        hi += carry(s, p4);
+        c = hi;
+        p5 = c;
+
+        // row 2: p[2..6] += a * b2
+        lo = a0 * b2;
+        hi = mulHi(a0, b2);
+        s = lo + p2;
+        hi += carry(lo, s);
+        p2 = s;
+        c = hi;
+        lo = a1 * b2;
+        hi = mulHi(a1, b2);
+        s = lo + p3;
+        hi += carry(lo, s);
+        p3 = s + c;
+        hi += carry(s, p3);
+        c = hi;
+        lo = a2 * b2;
+        hi = mulHi(a2, b2);
+        s = lo + p4;
+        hi += carry(lo, s);
+        p4 = s + c;
+        hi += carry(s, p4);
+        c = hi;
+        lo = a3 * b2;
+        hi = mulHi(a3, b2);
+        s = lo + p5;
+        hi += carry(lo, s);
+        p5 = s + c;
+        hi += carry(s, p5);
+        c = hi;
+        p6 = c;
+
+        // row 3: p[3..7] += a * b3
+        lo = a0 * b3;
+        hi = mulHi(a0, b3);
+        s = lo + p3;
+        hi += carry(lo, s);
+        p3 = s;
+        c = hi;
+        lo = a1 * b3;
+        hi = mulHi(a1, b3);
+        s = lo + p4;
+        hi += carry(lo, s);
+        p4 = s + c;
+        hi += carry(s, p4);
+        c = hi;
+        lo = a2 * b3;
+        hi = mulHi(a2, b3);
+        s = lo + p5;
+        hi += carry(lo, s);
+        p5 = s + c;
+        hi += carry(s, p5);
+        c = hi;
+        lo = a3 * b3;
+        hi = mulHi(a3, b3);
+        s = lo + p6;
+        hi += carry(lo, s);
+        p6 = s + c;
+        hi += carry(s, p6);
+        c = hi;
+        p7 = c;
+
+        if (mode == 0) {
+            r.w0 = p0;
+            r.w1 = p1;
+            r.w2 = p2;
+            r.w3 = p3;
+            r.w4 = p4;
+            r.w5 = p5;
+            r.w6 = p6;
+            r.w7 = p7;
+        } else if (mode > 0) {
+            add(r, p0, p1, p2, p3, p4, p5, p6, p7);
+        } else {
+            sub(r, p0, p1, p2, p3, p4, p5, p6, p7);
+        }
+    }
+
+    /**
+     * r = r + q mod p * 2^256, both operands are below p * 2^256 so the sum fits
+     * in 511 bits
+     */
+    private static void add(FpWide r, long q0, long q1, long q2, long q3, long q4, long q5, long q6, long q7) {
+        long s0 = r.w0 + q0;
+        long c = carry(q0, s0);
+        long s1 = r.w1 + q1;
+        long c1 = carry(q1, s1);
+        s1 += c;
+        c = c1 | carry(c, s1);
+        long s2 = r.w2 + q2;
+        c1 = carry(q2, s2);
+        s2 += c;
+        c = c1 | carry(c, s2);
+        long s3 = r.w3 + q3;
+        c1 = carry(q3, s3);
+        s3 += c;
+        c = c1 | carry(c, s3);
+        long s4 = r.w4 + q4;
+        c1 = carry(q4, s4);
+        s4 += c;
+        c = c1 | carry(c, s4);
+        long s5 = r.w5 + q5;
+        c1 = carry(q5, s5);
+        s5 += c;
+        c = c1 | carry(c, s5);
+        long s6 = r.w6 + q6;
+        c1 = carry(q6, s6);
+        s6 += c;
+        c = c1 | carry(c, s6);
+        long s7 = r.w7 + q7 + c;
+
+        r.w0 = s0;
+        r.w1 = s1;
+        r.w2 = s2;
+        r.w3 = s3;
+
+        // subtract p * 2^256 if the upper half reached p
+        long d4 = s4 - P0;
+        long w = borrow(s4, d4);
+        long d5 = s5 - P1;
+        long w1 = borrow(s5, d5);
+        long t = d5;
+        d5 -= w;
+        w = w1 | borrow(t, d5);
+        long d6 = s6 - P2;
+        w1 = borrow(s6, d6);
+        t = d6;
+        d6 -= w;
+        w = w1 | borrow(t, d6);
+        long d7 = s7 - P3;
+        w1 = borrow(s7, d7);
+        t = d7;
+        d7 -= w;
+        w = w1 | borrow(t, d7);
+
+        if (w == 0) {
+            r.w4 = d4;
+            r.w5 = d5;
+            r.w6 = d6;
+            r.w7 = d7;
+        } else {
+            r.w4 = s4;
+            r.w5 = s5;
+            r.w6 = s6;
+            r.w7 = s7;
+        }
+    }
+
+    /**
+     * r = r - q mod p * 2^256
+     */
+    private static void sub(FpWide r, long q0, long q1, long q2, long q3, long q4, long q5, long q6, long q7) {
+        long d0 = r.w0 - q0;
+        long w = borrow(r.w0, d0);
+        long d1 = r.w1 - q1;
+        long w1 = borrow(r.w1, d1);
+        long t = d1;
+        d1 -= w;
+        w = w1 | borrow(t, d1);
+        long d2 = r.w2 - q2;
+        w1 = borrow(r.w2, d2);
+        t = d2;
+        d2 -= w;
+        w = w1 | borrow(t, d2);
+        long d3 = r.w3 - q3;
+        w1 = borrow(r.w3, d3);
+        t = d3;
+        d3 -= w;
+        w = w1 | borrow(t, d3);
+        long d4 = r.w4 - q4;
+        w1 = borrow(r.w4, d4);
+        t = d4;
+        d4 -= w;
+        w = w1 | borrow(t, d4);
+        long d5 = r.w5 - q5;
+        w1 = borrow(r.w5, d5);
+        t = d5;
+        d5 -= w;
+        w = w1 | borrow(t, d5);
+        long d6 = r.w6 - q6;
+        w1 = borrow(r.w6, d6);
+        t = d6;
+        d6 -= w;
+        w = w1 | borrow(t, d6);
+        long d7 = r.w7 - q7;
+        w1 = borrow(r.w7, d7);
+        t = d7;
+        d7 -= w;
+        w = w1 | borrow(t, d7);
+
+        r.w0 = d0;
+        r.w1 = d1;
+        r.w2 = d2;
+        r.w3 = d3;
+
+        // add p * 2^256 back if the subtraction wrapped around
+        long mask = -w;
+        long s4 = d4 + (P0 & mask);
+        long c = carry(d4, s4);
+        long s5 = d5 + (P1 & mask);
+        long c1 = carry(d5, s5);
+        s5 += c;
+        c = c1 | carry(c, s5);
+        long s6 = d6 + (P2 & mask);
+        c1 = carry(d6, s6);
+        s6 += c;
+        c = c1 | carry(c, s6);
+
+        r.w4 = s4;
+        r.w5 = s5;
+        r.w6 = s6;
+        r.w7 = d7 + (P3 & mask) + c;
+    }
+}
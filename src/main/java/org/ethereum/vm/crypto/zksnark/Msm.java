@@ -0,0 +1,423 @@
+package org.ethereum.vm.crypto.zksnark;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Multi-scalar multiplication sum(k_i * P_i) over {@link BN128Fp} with
+ * Pippenger's bucket method <br/>
+ * <br/>
+ *
+ * Scalars are reduced modulo {@link Params#R} and recoded into signed c-bit
+ * digits in [-2^(c-1), 2^(c-1)], so each window needs 2^(c-1) buckets and
+ * negative digits add -P_i to the bucket of |d|. Window sums are combined
+ * with c doublings per window <br/>
+ *
+ * With many more terms than buckets, points of a window are sorted by bucket
+ * and each bucket is summed up pairwise in affine coordinates: every round
+ * adds up neighbouring points in all buckets at once and shares one field
+ * inversion between these additions, so a window takes about log2(terms per
+ * bucket) inversions. An affine addition then costs about six multiplications
+ * against eleven of a mixed Jacobian one. Smaller inputs can't pay for the
+ * inversions and add points to Jacobian buckets with mixed additions <br/>
+ *
+ * Windows are independent, {@link #computeParallel(BN128[], BigInteger[])}
+ * computes them as separate fork-join tasks
+ */
+public final class Msm {
+
+    // affine bucket sums need this many additions per window to amortize their inversions
+    private static final int AFFINE_MIN_ADDITIONS = 4096;
+
+    private static final int SCALAR_BITS = Params.R.bitLength();
+
+    private Msm() {}
+
+    /**
+     * Returns sum(scalars[i] * points[i]) with the window size picked by
+     * {@link #windowSize(int)}
+     */
+    public static BN128Fp compute(BN128<Fp>[] points, BigInteger[] scalars) {
+        return compute(points, scalars, windowSize(points.length));
+    }
+
+    /**
+     * Same as {@link #compute(BN128[], BigInteger[])} with explicit window size "c"
+     */
+    public static BN128Fp compute(BN128<Fp>[] points, BigInteger[] scalars, int c) {
+        Instance msm = new Instance(points, scalars, c);
+        Window window = new Window(msm);
+
+        BN128Fp.Register[] sums = new BN128Fp.Register[msm.windows];
+        for (int j = 0; j < msm.windows; j++) {
+            sums[j] = window.sum(j);
+        }
+
+        return msm.combine(sums);
+    }
+
+    /**
+     * Same as {@link #compute(BN128[], BigInteger[])}, windows are computed in
+     * parallel on the common fork-join pool
+     */
+    public static BN128Fp computeParallel(BN128<Fp>[] points, BigInteger[] scalars) {
+        return computeParallel(points, scalars, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #compute(BN128[], BigInteger[])}, windows are computed in
+     * parallel on the given pool
+     */
+    public static BN128Fp computeParallel(BN128<Fp>[] points, BigInteger[] scalars, ForkJoinPool pool) {
+        Instance msm = new Instance(points, scalars, windowSize(points.length));
+
+        return pool.invoke(new RecursiveTask<BN128Fp>() {
+            @Override
+            protected BN128Fp compute() {
+                List<RecursiveTask<BN128Fp.Register>> tasks = new ArrayList<>();
+                for (int j = 0; j < msm.windows; j++) {
+                    int window = j;
+                    tasks.add(new RecursiveTask<BN128Fp.Register>() {
+                        @Override
+                        protected BN128Fp.Register compute() {
+                            return new Window(msm).sum(window);
+                        }
+                    });
+                }
+                invokeAll(tasks);
+
+                BN128Fp.Register[] sums = new BN128Fp.Register[msm.windows];
+                for (int j = 0; j < msm.windows; j++) {
+                    sums[j] = tasks.get(j).join();
+                }
+
+                return msm.combine(sums);
+            }
+        });
+    }
+
+    /**
+     * Window size minimizing the number of additions: each of 254 / c + 1
+     * windows takes one addition per term plus two per bucket to sum the buckets
+     * up
+     */
+    static int windowSize(int n) {
+        int best = 2;
+        long bestCost = Long.MAX_VALUE;
+
+        for (int c = 2; c <= 20; c++) {
+            long cost = (long) (SCALAR_BITS / c + 1) * (n + (2L << (c - 1)));
+            if (cost < bestCost) {
+                best = c;
+                bestCost = cost;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Affine input points and scalar digits shared by all windows
+     */
+    private static final class Instance {
+        final int c;
+        final int windows;
+        final int buckets;
+        final boolean affine;
+
+        // affine coordinates of non-zero input points
+        final Fp[] xs;
+        final Fp[] ys;
+        final Fp[] ysNeg;
+
+        // signed digit of term i in window j at [j][i]
+        final int[][] digits;
+
+        Instance(BN128<Fp>[] points, BigInteger[] scalars, int c) {
+            if (points.length != scalars.length) {
+                throw new IllegalArgumentException("Number of points and scalars differ");
+            }
+            if (c < 2 || c > 20) throw new IllegalArgumentException("Window size must be in [2, 20]");
+
+            this.c = c;
+            this.windows = SCALAR_BITS / c + 1;
+            this.buckets = 1 << (c - 1);
+
+            // drop points at infinity, the rest is normalized with one inversion
+            int n = 0;
+            for (BN128<Fp> p : points) {
+                if (!p.isZero()) n++;
+            }
+            this.affine = n - buckets >= AFFINE_MIN_ADDITIONS;
+
+            Fp[] zs = new Fp[n];
+            for (int i = 0, k = 0; i < points.length; i++) {
+                if (!points[i].isZero()) zs[k++] = points[i].z;
+            }
+            Fp[] zInvs = Fp.batchInverse(zs);
+
+            this.xs = new Fp[n];
+            this.ys = new Fp[n];
+            this.ysNeg = new Fp[n];
+            this.digits = new int[windows][n];
+
+            for (int i = 0, k = 0; i < points.length; i++) {
+                BN128<Fp> p = points[i];
+                if (p.isZero()) continue;
+
+                Fp zInv2 = zInvs[k].squared();
+                xs[k] = p.x.mul(zInv2);
+                ys[k] = p.y.mul(zInv2.mul(zInvs[k]));
+                ysNeg[k] = ys[k].negate();
+
+                recode(scalars[i], k);
+                k++;
+            }
+        }
+
+        /**
+         * Splits a scalar into signed c-bit digits, a digit above 2^(c-1) borrows
+         * one from the next window
+         */
+        private void recode(BigInteger s, int i) {
+            BigInteger k = s.mod(Params.R);
+            int half = 1 << (c - 1);
+            int carry = 0;
+
+            for (int j = 0; j < windows; j++) {
+                int d = carry;
+                for (int b = 0; b < c; b++) {
+                    if (k.testBit(j * c + b)) d += 1 << b;
+                }
+
+                carry = d > half ? 1 : 0;
+                digits[j][i] = d - (carry << c);
+            }
+        }
+
+        /**
+         * Sum of 2^(c*j) * sums[j]
+         */
+        BN128Fp combine(BN128Fp.Register[] sums) {
+            BN128Fp.Register acc = new BN128Fp.Register();
+
+            for (int j = windows - 1; j >= 0; j--) {
+                for (int b = 0; b < c; b++) {
+                    BN128Fp.dblInto(acc);
+                }
+                BN128Fp.addInto(acc, sums[j]);
+            }
+
+            return acc.toPoint();
+        }
+    }
+
+    /**
+     * Computes sum(d_ij * P_i) over all terms i for one window j at a time, keeps
+     * the scratch space between windows. Not thread safe
+     */
+    private static final class Window {
+        private final Instance msm;
+
+        // affine mode: points of the window grouped by bucket, bucket b takes
+        // len[b] slots starting at start[b]
+        private final Fp[] x, y;
+        private final int[] start, len;
+
+        // affine mode: queued additions of slots s and s + 1 with slope num / den,
+        // cancelled[s] marks pairs with P + (-P) = 0
+        private final int[] slot;
+        private final boolean[] cancelled;
+        private final Fp[] num, den, prefix;
+        private final Fp lambda = new Fp(), t = new Fp(), inv = new Fp();
+
+        Window(Instance msm) {
+            this.msm = msm;
+
+            int n = msm.affine ? msm.xs.length : 0;
+            x = new Fp[n];
+            y = new Fp[n];
+            for (int i = 0; i < n; i++) {
+                x[i] = new Fp();
+                y[i] = new Fp();
+            }
+            start = new int[msm.buckets];
+            len = new int[msm.buckets];
+            cancelled = new boolean[n];
+
+            slot = new int[n / 2];
+            num = new Fp[n / 2];
+            den = new Fp[n / 2];
+            prefix = new Fp[n / 2];
+            for (int q = 0; q < n / 2; q++) {
+                num[q] = new Fp();
+                den[q] = new Fp();
+                prefix[q] = new Fp();
+            }
+        }
+
+        BN128Fp.Register sum(int j) {
+            return msm.affine ? affineSum(j) : jacobianSum(j);
+        }
+
+        private BN128Fp.Register jacobianSum(int j) {
+            BN128Fp.Register[] bs = new BN128Fp.Register[msm.buckets];
+            for (int b = 0; b < msm.buckets; b++) {
+                bs[b] = new BN128Fp.Register();
+            }
+
+            int[] ds = msm.digits[j];
+            for (int i = 0; i < ds.length; i++) {
+                int d = ds[i];
+                if (d > 0) {
+                    bs[d - 1].addAffine(msm.xs[i], msm.ys[i]);
+                } else if (d < 0) {
+                    bs[-d - 1].addAffine(msm.xs[i], msm.ysNeg[i]);
+                }
+            }
+
+            // sum(b * B_b) as a running sum from the top bucket down
+            BN128Fp.Register running = new BN128Fp.Register();
+            BN128Fp.Register res = new BN128Fp.Register();
+            for (int b = msm.buckets - 1; b >= 0; b--) {
+                BN128Fp.addInto(running, bs[b]);
+                BN128Fp.addInto(res, running);
+            }
+
+            return res;
+        }
+
+        private BN128Fp.Register affineSum(int j) {
+            int[] ds = msm.digits[j];
+
+            // counting sort of the terms by bucket, -P goes to the bucket of |d|
+            Arrays.fill(len, 0);
+            for (int d : ds) {
+                if (d != 0) len[Math.abs(d) - 1]++;
+            }
+            for (int b = 1; b < msm.buckets; b++) {
+                start[b] = start[b - 1] + len[b - 1];
+            }
+            Arrays.fill(len, 0);
+            for (int i = 0; i < ds.length; i++) {
+                int d = ds[i];
+                if (d == 0) continue;
+
+                int b = Math.abs(d) - 1;
+                int s = start[b] + len[b]++;
+                x[s].set(msm.xs[i]);
+                y[s].set(d > 0 ? msm.ys[i] : msm.ysNeg[i]);
+            }
+
+            while (reduceRound()) {}
+
+            BN128Fp.Register running = new BN128Fp.Register();
+            BN128Fp.Register res = new BN128Fp.Register();
+            for (int b = msm.buckets - 1; b >= 0; b--) {
+                if (len[b] > 0) running.addAffine(x[start[b]], y[start[b]]);
+                BN128Fp.addInto(res, running);
+            }
+
+            return res;
+        }
+
+        /**
+         * Adds up slots 2k and 2k + 1 of every bucket into slot k, returns false if
+         * every bucket already holds at most one point
+         */
+        private boolean reduceRound() {
+            int pairs = 0, queued = 0;
+
+            for (int b = 0; b < msm.buckets; b++) {
+                for (int s = start[b], end = s + len[b] - 1; s < end; s += 2) {
+                    pairs++;
+                    cancelled[s] = false;
+
+                    if (x[s].equals(x[s + 1])) {
+                        if (!y[s].equals(y[s + 1])) { // P + (-P) = 0
+                            cancelled[s] = true;
+                            continue;
+                        }
+
+                        // doubling, slope = 3 * x^2 / (2 * y)
+                        Fp.mul(t, x[s], x[s]);
+                        Fp.add(num[queued], t, t);
+                        Fp.add(num[queued], num[queued], t);
+                        Fp.add(den[queued], y[s], y[s]);
+                    } else {
+                        // slope = (y2 - y1) / (x2 - x1)
+                        Fp.sub(num[queued], y[s + 1], y[s]);
+                        Fp.sub(den[queued], x[s + 1], x[s]);
+                    }
+                    slot[queued++] = s;
+                }
+            }
+
+            if (pairs == 0) return false;
+
+            if (queued > 0) addQueued(queued);
+
+            // move the sum of slots 2k and 2k + 1, now in slot 2k, to slot k
+            for (int b = 0; b < msm.buckets; b++) {
+                int s0 = start[b], end = s0 + len[b], k = 0;
+                if (len[b] < 2) continue;
+
+                for (int s = s0; s < end; s += 2) {
+                    // the odd last point is carried over as it is
+                    if (s + 1 == end || !cancelled[s]) swap(s0 + k++, s);
+                }
+                len[b] = k;
+            }
+
+            return true;
+        }
+
+        /**
+         * Finishes queued additions with Montgomery's trick over their denominators
+         */
+        private void addQueued(int queued) {
+            prefix[0].set(den[0]);
+            for (int q = 1; q < queued; q++) {
+                Fp.mul(prefix[q], prefix[q - 1], den[q]);
+            }
+            inv.set(prefix[queued - 1].inverse());
+
+            for (int q = queued - 1; q >= 0; q--) {
+                // lambda = num / den, inv becomes the inverse of the remaining prefix
+                if (q > 0) {
+                    Fp.mul(t, inv, prefix[q - 1]);
+                    Fp.mul(inv, inv, den[q]);
+                    Fp.mul(lambda, num[q], t);
+                } else {
+                    Fp.mul(lambda, num[q], inv);
+                }
+
+                int s = slot[q];
+                Fp x1 = x[s], y1 = y[s];
+
+                // x3 = lambda^2 - x1 - x2, y3 = lambda * (x1 - x3) - y1
+                Fp.mul(t, lambda, lambda);
+                Fp.sub(t, t, x1);
+                Fp.sub(t, t, x[s + 1]);
+                Fp.sub(x1, x1, t);
+                Fp.mul(x1, x1, lambda);
+                Fp.sub(y1, x1, y1);
+                x1.set(t);
+            }
+        }
+
+        private void swap(int a, int b) {
+            if (a == b) return;
+
+            Fp tx = x[a], ty = y[a];
+            x[a] = x[b];
+            y[a] = y[b];
+            x[b] = tx;
+            y[b] = ty;
+        }
+    }
+}
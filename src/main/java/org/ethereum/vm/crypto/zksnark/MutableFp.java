@@ -0,0 +1,88 @@
+package org.ethereum.vm.crypto.zksnark;
+
+/**
+ * Mutable register holding an element of F_p <br/>
+ * <br/>
+ *
+ * Every operation writes its result into the register it is called on and
+ * returns that register, so a fixed set of registers can be reused across a
+ * whole computation without allocating. Operands may alias the target, e.g.
+ * {@code r.mul(r, r)} squares "r" in place <br/>
+ *
+ * Use {@link Fp} wherever a value is shared or stored, registers are meant to
+ * be owned by a single computation and are not thread safe
+ */
+public final class MutableFp {
+    final Fp v = new Fp();
+
+    public MutableFp() {}
+
+    public MutableFp(Fp value) {
+        v.set(value);
+    }
+
+    public MutableFp set(Fp o) {
+        v.set(o);
+        return this;
+    }
+
+    public MutableFp set(MutableFp o) {
+        v.set(o.v);
+        return this;
+    }
+
+    public MutableFp add(MutableFp a, MutableFp b) {
+        Fp.add(v, a.v, b.v);
+        return this;
+    }
+
+    public MutableFp sub(MutableFp a, MutableFp b) {
+        Fp.sub(v, a.v, b.v);
+        return this;
+    }
+
+    public MutableFp mul(MutableFp a, MutableFp b) {
+        Fp.mul(v, a.v, b.v);
+        return this;
+    }
+
+    public MutableFp squared(MutableFp a) {
+        Fp.mul(v, a.v, a.v);
+        return this;
+    }
+
+    public MutableFp dbl(MutableFp a) {
+        Fp.add(v, a.v, a.v);
+        return this;
+    }
+
+    public MutableFp negate(MutableFp a) {
+        Fp.negate(v, a.v);
+        return this;
+    }
+
+    public boolean isZero() {
+        return v.isZero();
+    }
+
+    /**
+     * Compares values held by two registers
+     */
+    public boolean valueEquals(MutableFp o) {
+        return v.equals(o.v);
+    }
+
+    /**
+     * Copies current value into a new immutable {@link Fp}
+     */
+    public Fp toFp() {
+        Fp r = new Fp();
+        r.set(v);
+        return r;
+    }
+
+    @Override
+    public String toString() {
+        return v.toString();
+    }
+}
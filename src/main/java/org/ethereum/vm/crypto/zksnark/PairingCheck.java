@@ -18,8 +18,13 @@
 package org.ethereum.vm.crypto.zksnark;
 
 import java.math.BigInteger;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Implementation of a Pairing Check operation over points of two twisted
@@ -39,11 +44,22 @@ import java.util.List;
  *
  * Usage:
  * <ul>
- * <li>add pairs sequentially with {@link #addPair(BN128G1, BN128G2)}</li>
- * <li>run check with {@link #run()} after all paris have been added</li>
+ * <li>add pairs sequentially with {@link #addPair(BN128G1, BN128G2)}, or with
+ * {@link #addPair(BN128G1, PreparedG2)} for G2 points that are used
+ * repeatedly</li>
+ * <li>multiply by precomputed pairing values, if any, with
+ * {@link #addFactor(Fp12)}</li>
+ * <li>run check with {@link #run()} after all paris have been added, or with
+ * {@link #runParallel()} for long pair sequences</li>
  * <li>get result with {@link #result()}</li>
  * </ul>
  *
+ * An instance can be cleared with {@link #reset()} and filled again, it keeps
+ * its pair objects and buffers then. {@link #acquire()} and {@link #release()}
+ * reuse instances through a small pool per thread <br/>
+ * <br/>
+ *
+ *
  * Arithmetic has been ported from <a href=
  * "https://github.com/scipr-lab/libff/blob/master/libff/algebra/curves/alt_bn128/alt_bn128_pairing.cpp">libff</a>
  * Ate pairing algorithms
@@ -54,80 +70,281 @@ import java.util.List;
 public class PairingCheck {
     static final BigInteger LOOP_COUNT = new BigInteger("29793968203157093288");
 
-    List<Pair> pairs = new ArrayList<>();
+    // NAF of LOOP_COUNT, least significant digit first, its 22 non-zero digits against 37 set bits
+    static final int[] LOOP_NAF = loopNaf();
+
+    // AZTEC verification checks two pairs
+    static final int DEFAULT_CAPACITY = 4;
+
+    // free instances kept by a thread for acquire()
+    static final int POOL_SIZE = 8;
+    private static final ThreadLocal<Deque<PairingCheck>> POOL = ThreadLocal.withInitial(ArrayDeque::new);
+
+    List<Pair> pairs;
+    List<Fp12> factors = new ArrayList<>();
     Fp12 product = Fp12._1;
 
-    private PairingCheck() {}
+    // every pair object ever added, reused after reset()
+    private final List<Pair> buffer;
+
+    private PairingCheck(int capacity) {
+        this.pairs = new ArrayList<>(capacity);
+        this.buffer = new ArrayList<>(capacity);
+    }
 
     public static PairingCheck create() {
-        return new PairingCheck();
+        return new PairingCheck(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Same as {@link #create()} with room for "pairs" pairs
+     */
+    public static PairingCheck create(int pairs) {
+        return new PairingCheck(pairs);
+    }
+
+    /**
+     * Returns an empty instance from the pool of the current thread, a new one
+     * if the pool is empty. Hand it back with {@link #release()} after reading the
+     * result
+     */
+    public static PairingCheck acquire() {
+        PairingCheck check = POOL.get().pollFirst();
+        return check != null ? check : create();
+    }
+
+    /**
+     * Resets this instance and returns it to the pool of the current thread, it
+     * must not be used afterwards
+     */
+    public void release() {
+        reset();
+
+        Deque<PairingCheck> pool = POOL.get();
+        if (pool.size() < POOL_SIZE) pool.addFirst(this);
+    }
+
+    /**
+     * Removes all pairs and factors, so that the instance can take a new check
+     */
+    public void reset() {
+        // pooled instances outlive the check, they mustn't keep its points reachable
+        for (int i = 0; i < pairs.size(); i++) {
+            buffer.get(i).set(null, null, null);
+        }
+        pairs.clear();
+        factors.clear();
+        product = Fp12._1;
     }
 
     public void addPair(BN128G1 g1, BN128G2 g2) {
-        pairs.add(Pair.of(g1, g2));
+        nextPair().set(g1, g2, null);
+    }
+
+    public void addPair(BN128G1 g1, PreparedG2 g2) {
+        nextPair().set(g1, g2.point(), g2);
+    }
+
+    private Pair nextPair() {
+        Pair pair;
+        if (pairs.size() < buffer.size()) {
+            pair = buffer.get(pairs.size());
+        } else {
+            pair = new Pair(null, null, null);
+            buffer.add(pair);
+        }
+
+        pairs.add(pair);
+        return pair;
+    }
+
+    /**
+     * Multiplies the product by a pairing value computed beforehand, e.g. with
+     * {@link #pairing(BN128G1, PreparedG2)}, so that pairs with both points
+     * fixed don't take a Miller loop on every check. Factors are applied after the
+     * final exponentiation, use {@link Fp12#unitaryInverse()} for pairings in the
+     * denominator
+     */
+    public void addFactor(Fp12 gt) {
+        factors.add(gt);
+    }
+
+    /**
+     * Returns reduced pairing e(g1, g2)
+     */
+    public static Fp12 pairing(BN128G1 g1, PreparedG2 g2) {
+        List<Pair> pair = new ArrayList<>(1);
+        pair.add(Pair.of(g1, g2));
+
+        return finalExponentiation(millerLoop(pair));
+    }
+
+    public static Fp12 pairing(BN128G1 g1, BN128G2 g2) {
+        return pairing(g1, PreparedG2.of(g2));
     }
 
     public void run() {
-        for (Pair pair : pairs) {
-            Fp12 miller = pair.millerLoop();
+        finish(millerLoop(pairs));
+    }
 
-            if (!miller.equals(Fp12._1)) product = product.mul(miller); // run mul code only if necessary
+    /**
+     * Same as {@link #run()}, Miller loops are computed in parallel on the common
+     * fork-join pool
+     */
+    public void runParallel() {
+        runParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #run()}, pairs are split into one chunk per thread of the
+     * pool, each chunk runs its own multi-pair Miller loop (see
+     * {@link #millerLoop(List)}) and preparation of its G2 points, then partial
+     * products are multiplied together and finalized once
+     */
+    public void runParallel(ForkJoinPool pool) {
+        int chunks = Math.min(pairs.size(), pool.getParallelism());
+        if (chunks <= 1) {
+            run();
+            return;
         }
 
+        Fp12 miller = pool.invoke(new RecursiveTask<Fp12>() {
+            @Override
+            protected Fp12 compute() {
+                List<RecursiveTask<Fp12>> tasks = new ArrayList<>(chunks);
+                for (int j = 0; j < chunks; j++) {
+                    List<Pair> chunk = pairs.subList(j * pairs.size() / chunks, (j + 1) * pairs.size() / chunks);
+                    tasks.add(new RecursiveTask<Fp12>() {
+                        @Override
+                        protected Fp12 compute() {
+                            return millerLoop(chunk);
+                        }
+                    });
+                }
+                invokeAll(tasks);
+
+                Fp12 res = Fp12._1;
+                for (RecursiveTask<Fp12> task : tasks) {
+                    Fp12 f = task.join();
+                    if (!f.equals(Fp12._1)) res = res.mul(f);
+                }
+                return res;
+            }
+        });
+
+        finish(miller);
+    }
+
+    private void finish(Fp12 miller) {
+        if (!miller.equals(Fp12._1)) product = product.mul(miller); // run mul code only if necessary
+
         // finalize
         product = finalExponentiation(product);
+
+        for (Fp12 gt : factors) {
+            product = product.mul(gt);
+        }
     }
 
     public int result() {
         return product.equals(Fp12._1) ? 1 : 0;
     }
 
-    private static Fp12 millerLoop(BN128G1 g1, BN128G2 g2) {
-        // convert to affine coordinates
-        g1 = g1.toAffine();
-        g2 = g2.toAffine();
+    /**
+     * Product of the Miller loops of all the pairs computed in a single pass: the
+     * accumulator is squared once per digit of {@link #LOOP_NAF} and then
+     * multiplied by the line of every pair, instead of squaring a separate
+     * accumulator per pair
+     */
+    static Fp12 millerLoop(List<Pair> pairs) {
+        int n = 0;
+        for (Pair pair : pairs) {
+            // miller loop result equals "1" if at least one of the points is zero
+            if (!pair.isZero()) n++;
+        }
+
+        if (n == 0) return Fp12._1;
+
+        Fp[] xs = new Fp[n];
+        Fp[] ys = new Fp[n];
+        PreparedG2[] g2s = new PreparedG2[n];
 
-        // calculate Ell coefficients
-        List<EllCoeffs> coeffs = calcEllCoeffs(g2);
+        int k = 0;
+        for (Pair pair : pairs) {
+            if (pair.isZero()) continue;
+
+            // convert to affine coordinates
+            BN128G1 g1 = pair.g1.toAffine();
+            xs[k] = g1.x;
+            ys[k] = g1.y;
+            g2s[k++] = pair.prepared();
+        }
 
         Fp12 f = Fp12._1;
         int idx = 0;
 
-        // for each bit except most significant one
-        for (int i = LOOP_COUNT.bitLength() - 2; i >= 0; i--) {
-            EllCoeffs c = coeffs.get(idx++);
+        // for each digit except most significant one
+        for (int i = LOOP_NAF.length - 2; i >= 0; i--) {
+            int lines = LOOP_NAF[i] != 0 ? 2 : 1;
+
             f = f.squared();
-            f = f.mulBy024(c.ell0, g1.y.mul(c.ellVW), g1.x.mul(c.ellVV));
+            f = mulByLines(f, xs, ys, g2s, idx, lines);
+            idx += lines;
+        }
+
+        f = mulByLines(f, xs, ys, g2s, idx, 2);
+
+        return f;
+    }
 
-            if (LOOP_COUNT.testBit(i)) {
-                c = coeffs.get(idx++);
-                f = f.mulBy024(c.ell0, g1.y.mul(c.ellVW), g1.x.mul(c.ellVV));
+    /**
+     * Multiplies "f" by lines [idx, idx + count) of every pair evaluated at its G1
+     * point, lines are multiplied together two at a time with
+     * {@link Fp12#mulLines(Fp2, Fp2, Fp2, Fp2, Fp2, Fp2)} before they touch "f"
+     */
+    private static Fp12 mulByLines(Fp12 f, Fp[] xs, Fp[] ys, PreparedG2[] g2s, int idx, int count) {
+        Fp2 ell0 = null, ellVW = null, ellVV = null; // pending line
+
+        for (int k = 0; k < xs.length; k++) {
+            for (int j = idx; j < idx + count; j++) {
+                EllCoeffs c = g2s[k].coeffs.get(j);
+                Fp2 vw = ys[k].mul(c.ellVW);
+                Fp2 vv = xs[k].mul(c.ellVV);
+
+                if (ell0 == null) {
+                    ell0 = c.ell0;
+                    ellVW = vw;
+                    ellVV = vv;
+                } else {
+                    f = f.mulBySparse(Fp12.mulLines(ell0, ellVW, ellVV, c.ell0, vw, vv));
+                    ell0 = null;
+                }
             }
         }
 
-        EllCoeffs c = coeffs.get(idx++);
-        f = f.mulBy024(c.ell0, g1.y.mul(c.ellVW), g1.x.mul(c.ellVV));
-
-        c = coeffs.get(idx);
-        f = f.mulBy024(c.ell0, g1.y.mul(c.ellVW), g1.x.mul(c.ellVV));
+        if (ell0 != null) f = f.mulBy024(ell0, ellVW, ellVV);
 
         return f;
     }
 
-    private static List<EllCoeffs> calcEllCoeffs(BN128G2 base) {
+    /**
+     * Line coefficients of the Miller loop, "base" must be in affine coordinates
+     */
+    static List<EllCoeffs> calcEllCoeffs(BN128G2 base) {
         List<EllCoeffs> coeffs = new ArrayList<>();
 
         BN128G2 addend = base;
+        BN128G2 negBase = new BN128G2(base.x, base.y.negate(), base.z);
 
-        // for each bit except most significant one
-        for (int i = LOOP_COUNT.bitLength() - 2; i >= 0; i--) {
+        // for each digit except most significant one
+        for (int i = LOOP_NAF.length - 2; i >= 0; i--) {
             Precomputed doubling = flippedMillerLoopDoubling(addend);
 
             addend = doubling.g2;
             coeffs.add(doubling.coeffs);
 
-            if (LOOP_COUNT.testBit(i)) {
-                Precomputed addition = flippedMillerLoopMixedAddition(base, addend);
+            if (LOOP_NAF[i] != 0) {
+                Precomputed addition = flippedMillerLoopMixedAddition(LOOP_NAF[i] > 0 ? base : negBase, addend);
                 addend = addition.g2;
                 coeffs.add(addition.coeffs);
             }
@@ -197,6 +414,15 @@ public class PairingCheck {
         return Precomputed.of(new BN128G2(rx, ry, rz), new EllCoeffs(ell0, ellVW, ellVV));
     }
 
+    private static int[] loopNaf() {
+        int[] naf = WNaf.encode(LOOP_COUNT, 2);
+
+        int len = naf.length;
+        while (naf[len - 1] == 0) len--;
+
+        return Arrays.copyOf(naf, len);
+    }
+
     public static Fp12 finalExponentiation(Fp12 el) {
         // first chunk
         Fp12 w = new Fp12(el.a, el.b.negate()); // el.b = -el.b
@@ -249,22 +475,35 @@ public class PairingCheck {
     static class Pair {
         BN128G1 g1;
         BN128G2 g2;
+        PreparedG2 prepared;
 
         static Pair of(BN128G1 g1, BN128G2 g2) {
-            return new Pair(g1, g2);
+            return new Pair(g1, g2, null);
+        }
+
+        static Pair of(BN128G1 g1, PreparedG2 prepared) {
+            return new Pair(g1, prepared.point(), prepared);
         }
 
-        Pair(BN128G1 g1, BN128G2 g2) {
+        Pair(BN128G1 g1, BN128G2 g2, PreparedG2 prepared) {
+            set(g1, g2, prepared);
+        }
+
+        void set(BN128G1 g1, BN128G2 g2, PreparedG2 prepared) {
             this.g1 = g1;
             this.g2 = g2;
+            this.prepared = prepared;
         }
 
-        Fp12 millerLoop() {
-            // miller loop result equals "1" if at least one of the points is zero
-            if (g1.isZero()) return Fp12._1;
-            if (g2.isZero()) return Fp12._1;
+        boolean isZero() {
+            return g1.isZero() || g2 == null || g2.isZero();
+        }
 
-            return PairingCheck.millerLoop(g1, g2);
+        // G2 points added without preparation are prepared by the Miller loop that
+        // uses them, so that parallel runs prepare them in parallel too
+        PreparedG2 prepared() {
+            if (prepared == null) prepared = PreparedG2.of(g2);
+            return prepared;
         }
     }
 
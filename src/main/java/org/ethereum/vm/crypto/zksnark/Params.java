@@ -66,4 +66,30 @@ public class Params {
     );
 
     public static final BigInteger PAIRING_FINAL_EXPONENT_Z = new BigInteger("4965661367192848881");
+
+    /**
+     * Non-trivial cube root of unity in F_p, (x; y) -> (beta * x; y) is an
+     * endomorphism of {@link BN128Fp} acting as multiplication by
+     * {@link #GLV_LAMBDA}
+     */
+    public static final Fp GLV_BETA = Fp.create(
+        new BigInteger("2203960485148121921418603742825762020974279258880205651966")
+    );
+
+    /**
+     * Cube root of unity modulo "r" matching {@link #GLV_BETA}
+     */
+    public static final BigInteger GLV_LAMBDA = new BigInteger(
+        "4407920970296243842393367215006156084916469457145843978461"
+    );
+
+    /**
+     * Reduced basis (a1; b1), (a2; b2) of the lattice of (k1; k2) with k1 + k2 *
+     * lambda = 0 mod "r", obtained with the extended Euclidean algorithm on "r"
+     * and {@link #GLV_LAMBDA}; a1 * b2 - a2 * b1 = r
+     */
+    static final BigInteger GLV_A1 = new BigInteger("9931322734385697763");
+    static final BigInteger GLV_B1 = new BigInteger("-147946756881789319000765030803803410728");
+    static final BigInteger GLV_A2 = new BigInteger("147946756881789319010696353538189108491");
+    static final BigInteger GLV_B2 = new BigInteger("9931322734385697763");
 }
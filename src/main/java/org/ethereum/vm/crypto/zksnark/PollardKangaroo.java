@@ -0,0 +1,259 @@
+package org.ethereum.vm.crypto.zksnark;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pollard's lambda (kangaroo) search of "k" with T = k * G for "k" in an
+ * interval [from, to) of width "n", in the parallel form of van Oorschot and
+ * Wiener <br/>
+ * <br/>
+ *
+ * Tame kangaroos start at known multiples of G in the upper half of the
+ * interval, wild ones at T plus known multiples of G. All of them jump by
+ * s_i * G, where "i" is a function of the affine x of the current point, so two
+ * kangaroos landing on the same point walk together from there on. A point is
+ * distinguished if the low bits of its x are zero, kangaroos report those in a
+ * table shared by all threads, and a tame and a wild kangaroo meeting there
+ * give k = tame distance - wild distance <br/>
+ *
+ * Jumps average n_k * sqrt(n) / 4 for n_k kangaroos, the search takes about 2 *
+ * sqrt(n) jumps in total plus n_k jumps per distinguished point spacing, and the
+ * table keeps a few entries per kangaroo instead of the sqrt(n) of
+ * {@link BabyStepGiantStep} <br/>
+ *
+ * Each thread runs a herd of kangaroos, their affine additions share one field
+ * inversion per jump <br/>
+ *
+ * The search is probabilistic, it gives up after several times the expected
+ * number of jumps and then reports "k" as not found, even if it is in the
+ * interval with a tiny probability
+ */
+public final class PollardKangaroo {
+    // tame and wild kangaroos per herd, each
+    static final int HERD = 8;
+
+    // jumps between checks of the shared state
+    static final int CHECK_INTERVAL = 64;
+
+    // distances are kept in a long, which has to hold a few times the interval width times the number of kangaroos
+    static final long MAX_WIDTH = 1L << 48;
+
+    private final BN128<Fp> base;
+    // T - from * G, searched in [0, width)
+    private final BN128<Fp> target;
+    private final long width;
+
+    private final long[] jumps;
+    private final Fp[] jumpX;
+    private final Fp[] jumpY;
+    private final long dpMask;
+    private final long maxSteps;
+
+    // distinguished points by affine x
+    private final ConcurrentHashMap<Fp, Trap> traps = new ConcurrentHashMap<>();
+    private final AtomicLong steps = new AtomicLong();
+    private final AtomicBoolean done = new AtomicBoolean();
+    private volatile long found = -1;
+
+    private PollardKangaroo(BN128<Fp> base, BN128<Fp> target, long width, int kangaroos) {
+        this.base = base;
+        this.target = target;
+        this.width = width;
+
+        double sqrtWidth = Math.sqrt(width);
+
+        // powers of two averaging about kangaroos * sqrt(width) / 4
+        double mean = Math.max(1, kangaroos * sqrtWidth / 4);
+        int count = 1;
+        while (count < 48 && ((1L << count) - 1) / (double) count < mean) count++;
+
+        this.jumps = new long[count];
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        BN128<Fp>[] points = (BN128<Fp>[]) new BN128[count];
+        for (int i = 0; i < count; i++) {
+            jumps[i] = 1L << i;
+            points[i] = base.mul(BigInteger.valueOf(jumps[i]));
+        }
+        points = BN128.batchToAffine(points);
+
+        this.jumpX = new Fp[count];
+        this.jumpY = new Fp[count];
+        for (int i = 0; i < count; i++) {
+            jumpX[i] = points[i].x;
+            jumpY[i] = points[i].y;
+        }
+
+        // about one distinguished point in sqrt(width) / (8 * kangaroos)
+        int dpBits = 0;
+        while ((1L << (dpBits + 1)) * 8L * kangaroos <= sqrtWidth) dpBits++;
+        this.dpMask = (1L << dpBits) - 1;
+
+        this.maxSteps = 16 * (long) sqrtWidth + 8L * kangaroos * (dpMask + 1) + 4096;
+    }
+
+    /**
+     * Same as {@link #find(BN128, BN128, long, long, ForkJoinPool)} on the common
+     * pool
+     */
+    public static long find(BN128<Fp> base, BN128<Fp> target, long from, long to) {
+        return find(base, target, from, to, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns "k" in [from, to) such that target = k * base, or -1 if it hasn't
+     * been found, runs a herd of kangaroos per thread of the pool
+     */
+    public static long find(BN128<Fp> base, BN128<Fp> target, long from, long to, ForkJoinPool pool) {
+        if (base.isZero()) throw new IllegalArgumentException("Base point is the point at infinity");
+        if (from >= to) return -1;
+        if (to - from > MAX_WIDTH || to - from < 0) throw new IllegalArgumentException("Interval is too wide");
+
+        int herds = Math.max(1, pool.getParallelism());
+        BN128<Fp> shifted = target.add(base.mul(BigInteger.valueOf(from)).negate());
+        PollardKangaroo search = new PollardKangaroo(base, shifted, to - from, herds * 2 * HERD);
+
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                List<Herd> tasks = new ArrayList<>(herds);
+                for (int j = 0; j < herds; j++) {
+                    tasks.add(search.new Herd());
+                }
+                invokeAll(tasks);
+            }
+        });
+
+        return search.found < 0 ? -1 : from + search.found;
+    }
+
+    private static final class Trap {
+        final long distance;
+        final boolean tame;
+
+        Trap(long distance, boolean tame) {
+            this.distance = distance;
+            this.tame = tame;
+        }
+    }
+
+    private final class Herd extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // affine points, distances from G or from T, tame kangaroos first
+        final Fp[] xs = new Fp[2 * HERD];
+        final Fp[] ys = new Fp[2 * HERD];
+        final long[] distances = new long[2 * HERD];
+
+        final int[] idx = new int[2 * HERD];
+        final Fp[] dxs = new Fp[2 * HERD];
+        final Fp[] invs = new Fp[2 * HERD];
+
+        @Override
+        protected void compute() {
+            for (int s = 0; s < 2 * HERD; s++) {
+                start(s);
+            }
+
+            while (!done.get()) {
+                for (int t = 0; t < CHECK_INTERVAL; t++) {
+                    if (jump()) return;
+                }
+                if (steps.addAndGet(CHECK_INTERVAL * 2 * HERD) > maxSteps) done.set(true);
+            }
+        }
+
+        /**
+         * Puts kangaroo "s" at a random point in the upper half of the interval
+         * if tame, at T plus a random multiple of G otherwise
+         */
+        void start(int s) {
+            boolean tame = s < HERD;
+
+            Random random = ThreadLocalRandom.current();
+            BN128<Fp> p;
+            do {
+                long spread = Math.max(1, jumpMean());
+                distances[s] = (tame ? width / 2 : 0) + (long) (random.nextDouble() * spread);
+                p = base.mul(BigInteger.valueOf(distances[s]));
+                if (!tame) p = target.add(p);
+            } while (p.isZero());
+
+            p = p.toAffine();
+            xs[s] = p.x;
+            ys[s] = p.y;
+        }
+
+        long jumpMean() {
+            return jumps[jumps.length - 1] * 2 / jumps.length;
+        }
+
+        /**
+         * Moves every kangaroo of the herd, returns true once the search is over
+         */
+        boolean jump() {
+            for (int s = 0; s < 2 * HERD; s++) {
+                // P = +-S_i, the addition is a doubling or gives zero, start over elsewhere
+                while (true) {
+                    idx[s] = index(xs[s]);
+                    dxs[s] = jumpX[idx[s]].sub(xs[s]);
+                    if (!dxs[s].isZero()) break;
+                    start(s);
+                }
+            }
+
+            Field.batchInverse(dxs, invs);
+
+            for (int s = 0; s < 2 * HERD; s++) {
+                int i = idx[s];
+
+                // lambda = (y2 - y1) / (x2 - x1), x3 = lambda^2 - x1 - x2, y3 = lambda * (x1 - x3) - y1
+                Fp lambda = jumpY[i].sub(ys[s]).mul(invs[s]);
+                Fp x3 = lambda.squared().sub(xs[s]).sub(jumpX[i]);
+                ys[s] = lambda.mul(xs[s].sub(x3)).sub(ys[s]);
+                xs[s] = x3;
+                distances[s] += jumps[i];
+
+                if ((x3.v0 & dpMask) == 0 && trap(s)) return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * Reports a distinguished point, returns true once the search is over
+         */
+        boolean trap(int s) {
+            boolean tame = s < HERD;
+            Trap other = traps.putIfAbsent(xs[s], new Trap(distances[s], tame));
+            if (other == null) return false;
+
+            if (other.tame != tame) {
+                long k = tame ? distances[s] - other.distance : other.distance - distances[s];
+
+                // a shared x is also hit by the opposite point, so the candidate is checked
+                if (k >= 0 && k < width && base.mul(BigInteger.valueOf(k)).pointEquals(target)) {
+                    found = k;
+                    done.set(true);
+                    return true;
+                }
+            }
+
+            // both kangaroos would walk the same path from now on
+            start(s);
+            return done.get();
+        }
+
+        int index(Fp x) {
+            return (int) Long.remainderUnsigned(x.v1, jumps.length);
+        }
+    }
+}
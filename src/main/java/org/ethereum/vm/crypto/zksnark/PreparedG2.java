@@ -0,0 +1,49 @@
+package org.ethereum.vm.crypto.zksnark;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link BN128G2} point together with the line coefficients of its Miller
+ * loop <br/>
+ * <br/>
+ *
+ * The coefficients depend on the G2 point only, so a point that takes part in
+ * many pairing checks, e.g. a point of the common reference string, can be
+ * prepared once and then passed to
+ * {@link PairingCheck#addPair(BN128G1, PreparedG2)}, which skips all the G2
+ * doublings and additions of the Miller loop <br/>
+ *
+ * Instances are immutable and can be shared between threads
+ */
+public final class PreparedG2 {
+    // prepared point at infinity, its Miller loop equals "1"
+    static final PreparedG2 ZERO = new PreparedG2(null, Collections.emptyList());
+
+    private final BN128G2 point;
+    final List<PairingCheck.EllCoeffs> coeffs;
+
+    private PreparedG2(BN128G2 point, List<PairingCheck.EllCoeffs> coeffs) {
+        this.point = point;
+        this.coeffs = coeffs;
+    }
+
+    public static PreparedG2 of(BN128G2 g2) {
+        if (g2.isZero()) return ZERO;
+
+        BN128G2 affine = g2.toAffine();
+        return new PreparedG2(affine, Collections.unmodifiableList(PairingCheck.calcEllCoeffs(affine)));
+    }
+
+    /**
+     * Returns the prepared point in affine coordinates, null for the point at
+     * infinity
+     */
+    public BN128G2 point() {
+        return point;
+    }
+
+    public boolean isZero() {
+        return point == null;
+    }
+}
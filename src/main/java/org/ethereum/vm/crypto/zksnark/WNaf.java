@@ -0,0 +1,48 @@
+package org.ethereum.vm.crypto.zksnark;
+
+import java.math.BigInteger;
+
+/**
+ * Width-w non-adjacent form of a non-negative integer <br/>
+ *
+ * Every non-zero digit is odd and lies in (-2^(w-1), 2^(w-1)), any w
+ * consecutive digits hold at most one non-zero digit. With w = 2 this is the
+ * plain NAF with digits in {-1, 0, 1}
+ */
+final class WNaf {
+
+    private WNaf() {}
+
+    /**
+     * Returns digits of "k" least significant first, the array is at most one
+     * digit longer than the bit length of "k"
+     */
+    static int[] encode(BigInteger k, int w) {
+        if (k.signum() < 0) throw new IllegalArgumentException("Negative scalar");
+        if (w < 2 || w > 16) throw new IllegalArgumentException("Window width must be in [2, 16]");
+
+        int len = k.bitLength();
+        int[] res = new int[len + 1];
+        int carry = 0;
+
+        for (int bit = 0; bit < len + 1;) {
+            if ((k.testBit(bit) ? 1 : 0) == carry) {
+                bit++;
+                continue;
+            }
+
+            // next w bits plus the carry of the previous digit
+            int word = carry;
+            for (int i = 0; i < w; i++) {
+                if (k.testBit(bit + i)) word += 1 << i;
+            }
+
+            // keep the digit odd and below 2^(w-1) in magnitude, borrow from the higher bits otherwise
+            carry = (word >> (w - 1)) & 1;
+            res[bit] = word - (carry << w);
+            bit += w;
+        }
+
+        return res;
+    }
+}
@@ -0,0 +1,57 @@
+package org.ethereum.vm.crypto.zksnark;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * One inversion per element against {@link Fp#batchInverse(Fp[])}, and
+ * {@link BN128#toAffine()} on each point against
+ * {@link BN128#batchToAffine(BN128[])}, for batches of 8, 64 and 1024 <br/>
+ *
+ * Usage: BatchToAffineBenchmark [rounds]
+ */
+public class BatchToAffineBenchmark {
+
+    public static void main(String[] args) {
+        int rounds = Benchmarks.rounds(args, 50);
+        Random random = new Random(1);
+
+        BN128<Fp> g = BN128Fp.create(BigInteger.ONE.toByteArray(), BigInteger.TWO.toByteArray());
+
+        for (int n : new int[] { 8, 64, 1024 }) {
+            Fp[] els = new Fp[n];
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            BN128<Fp>[] points = (BN128<Fp>[]) new BN128[n];
+            for (int i = 0; i < n; i++) {
+                els[i] = new Fp(new BigInteger(254, random).mod(Params.P));
+                // Jacobian points with z != 1
+                points[i] = g.mul(new BigInteger(254, random));
+            }
+
+            int calls = Math.max(1, 1024 / n);
+
+            Benchmarks.of("inversion, batch of " + n)
+                .add("inverse() per element", () -> {
+                    Fp[] res = new Fp[n];
+                    for (int i = 0; i < n; i++) {
+                        res[i] = els[i].inverse();
+                    }
+                    return res;
+                })
+                .add("Fp.batchInverse", () -> Fp.batchInverse(els))
+                .run(rounds, calls);
+
+            Benchmarks.of("affine normalisation, batch of " + n)
+                .add("toAffine() per point", () -> {
+                    @SuppressWarnings({ "unchecked", "rawtypes" })
+                    BN128<Fp>[] res = (BN128<Fp>[]) new BN128[n];
+                    for (int i = 0; i < n; i++) {
+                        res[i] = points[i].toAffine();
+                    }
+                    return res;
+                })
+                .add("BN128.batchToAffine", () -> BN128.batchToAffine(points))
+                .run(rounds, calls);
+        }
+    }
+}
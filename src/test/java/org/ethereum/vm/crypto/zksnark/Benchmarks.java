@@ -0,0 +1,71 @@
+package org.ethereum.vm.crypto.zksnark;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Minimal harness for the main-driven benchmarks of this package <br/>
+ *
+ * Cases of a comparison are run interleaved, one batch of calls each per
+ * round, so that a slow phase of the machine hits all of them alike. The first
+ * fifth of the rounds warms up the JIT and is discarded, the median and the
+ * minimum time per call of the remaining rounds are printed <br/>
+ *
+ * Run with a fixed heap and a simple collector for stable numbers, e.g.
+ * -Xms1g -Xmx1g -XX:+UseSerialGC
+ */
+final class Benchmarks {
+    // keeps results alive so that calls aren't optimized away
+    static volatile Object sink;
+
+    private final String title;
+    private final Map<String, Supplier<?>> cases = new LinkedHashMap<>();
+
+    private Benchmarks(String title) {
+        this.title = title;
+    }
+
+    static Benchmarks of(String title) {
+        return new Benchmarks(title);
+    }
+
+    Benchmarks add(String name, Supplier<?> call) {
+        cases.put(name, call);
+        return this;
+    }
+
+    /**
+     * Runs "rounds" rounds of "calls" calls of every case
+     */
+    void run(int rounds, int calls) {
+        double[][] times = new double[cases.size()][rounds];
+
+        for (int r = 0; r < rounds; r++) {
+            int c = 0;
+            for (Supplier<?> call : cases.values()) {
+                long start = System.nanoTime();
+                for (int i = 0; i < calls; i++) {
+                    sink = call.get();
+                }
+                times[c++][r] = (System.nanoTime() - start) / 1e3 / calls;
+            }
+        }
+
+        System.out.println(title);
+        int c = 0;
+        for (String name : cases.keySet()) {
+            double[] t = Arrays.copyOfRange(times[c++], rounds / 5, rounds);
+            Arrays.sort(t);
+            System.out.printf("  %-40s median %10.1f us   min %10.1f us%n", name, t[t.length / 2], t[0]);
+        }
+    }
+
+    /**
+     * Number of rounds given as the first program argument, or "def"
+     */
+    static int rounds(String[] args, int def) {
+        return args.length > 0 ? Integer.parseInt(args[0]) : def;
+    }
+}
@@ -0,0 +1,69 @@
+package org.ethereum.vm.crypto.zksnark;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Square-and-multiply {@link Fp12#cyclotomicExp(BigInteger)} against the
+ * compressed {@link Fp12#cyclotomicExpCompressed(BigInteger)} for the exponent
+ * of the final exponentiation and a full-size one, plus the final
+ * exponentiation itself <br/>
+ *
+ * Usage: CyclotomicExpBenchmark [rounds]
+ */
+public class CyclotomicExpBenchmark {
+
+    public static void main(String[] args) {
+        int rounds = Benchmarks.rounds(args, 100);
+        Random random = new Random(1);
+
+        Fp12 x = cyclotomic(random);
+
+        BigInteger u = Params.PAIRING_FINAL_EXPONENT_Z;
+        BigInteger e = new BigInteger(254, random).mod(Params.R);
+
+        Fp12[] squares = new Fp12[23];
+        Fp12 c = x;
+        for (int i = 0; i < squares.length; i++) {
+            c = c.cyclotomicSquaredCompressed();
+            squares[i] = c;
+        }
+
+        Benchmarks.of("cyclotomic squaring")
+            .add("cyclotomicSquared", x::cyclotomicSquared)
+            .add("cyclotomicSquaredCompressed", x::cyclotomicSquaredCompressed)
+            .add("decompress, 23 elements", () -> Fp12.decompress(squares))
+            .run(rounds, 50);
+
+        Benchmarks.of("x^u, u = " + u)
+            .add("cyclotomicExp", () -> x.cyclotomicExp(u))
+            .add("cyclotomicExpCompressed", () -> x.cyclotomicExpCompressed(u))
+            .run(rounds, 5);
+
+        Benchmarks.of("x^e, e of 254 bits")
+            .add("cyclotomicExp", () -> x.cyclotomicExp(e))
+            .add("cyclotomicExpCompressed", () -> x.cyclotomicExpCompressed(e))
+            .run(rounds, 2);
+
+        Benchmarks.of("final exponentiation")
+            .add("finalExponentiation", () -> PairingCheck.finalExponentiation(x))
+            .run(rounds, 2);
+    }
+
+    /**
+     * Random element of the cyclotomic subgroup, f^((p^6 - 1) * (p^2 + 1)) for a
+     * random "f", as in the easy part of the final exponentiation
+     */
+    static Fp12 cyclotomic(Random random) {
+        Fp2[] c = new Fp2[6];
+        for (int i = 0; i < c.length; i++) {
+            Fp re = new Fp(new BigInteger(256, random).mod(Params.P));
+            Fp im = new Fp(new BigInteger(256, random).mod(Params.P));
+            c[i] = new Fp2(re, im);
+        }
+        Fp12 f = new Fp12(new Fp6(c[0], c[1], c[2]), new Fp6(c[3], c[4], c[5]));
+
+        Fp12 t = f.unitaryInverse().mul(f.inverse());
+        return t.frobeniusMap(2).mul(t);
+    }
+}
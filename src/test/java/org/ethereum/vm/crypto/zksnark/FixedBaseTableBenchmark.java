@@ -0,0 +1,58 @@
+package org.ethereum.vm.crypto.zksnark;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * {@link FixedBaseTable#mul(BigInteger)} against the generic
+ * {@link BN128#mul(BigInteger)} on random 254 bits scalars, for windows of 4, 6
+ * and 8 bits, along with the time to build each table <br/>
+ *
+ * Usage: FixedBaseTableBenchmark [rounds]
+ */
+public class FixedBaseTableBenchmark {
+
+    public static void main(String[] args) {
+        int rounds = Benchmarks.rounds(args, 50);
+        Random random = new Random(1);
+
+        BN128<Fp> g = BN128Fp.create(BigInteger.ONE.toByteArray(), BigInteger.TWO.toByteArray());
+
+        BigInteger[] scalars = new BigInteger[64];
+        for (int i = 0; i < scalars.length; i++) {
+            scalars[i] = new BigInteger(254, random).mod(Params.R);
+        }
+
+        int[] windows = { 4, 6, 8 };
+        FixedBaseTable[] tables = new FixedBaseTable[windows.length];
+        for (int j = 0; j < windows.length; j++) {
+            tables[j] = new FixedBaseTable(g, windows[j]);
+        }
+
+        Benchmarks mul = Benchmarks.of("scalar multiplication of G").add("BN128.mul", () -> {
+            BN128<Fp> res = null;
+            for (BigInteger k : scalars) {
+                res = g.mul(k);
+            }
+            return res;
+        });
+        for (int j = 0; j < windows.length; j++) {
+            FixedBaseTable table = tables[j];
+            mul.add("FixedBaseTable.mul, w = " + windows[j], () -> {
+                BN128<Fp> res = null;
+                for (BigInteger k : scalars) {
+                    res = table.mul(k);
+                }
+                return res;
+            });
+        }
+        // times per batch of 64 multiplications
+        mul.run(rounds, 1);
+
+        Benchmarks build = Benchmarks.of("table construction");
+        for (int w : windows) {
+            build.add("new FixedBaseTable, w = " + w, () -> new FixedBaseTable(g, w));
+        }
+        build.run(Math.max(5, rounds / 5), 1);
+    }
+}